@@ -0,0 +1,33 @@
+package com.webflux.apirest.client;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Where the instances of the service are, asked again on every call and every retry
+@FunctionalInterface
+public interface InstanceSource {
+    Mono<List<URI>> instances();
+
+    static InstanceSource of(URI... instances) {
+        if (instances.length == 0) {
+            throw new IllegalArgumentException("At least one instance is required");
+        }
+        List<URI> list = Collections.unmodifiableList(Arrays.asList(instances));
+        return () -> Mono.just(list);
+    }
+
+    // With Eureka this reads the locally cached registry, it does not call the server
+    static InstanceSource discovery(ReactiveDiscoveryClient discoveryClient, String serviceId) {
+        return () -> discoveryClient.getInstances(serviceId)
+                .map(ServiceInstance::getUri)
+                .collectList()
+                .filter(instances -> !instances.isEmpty())
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No instances of ".concat(serviceId))));
+    }
+}
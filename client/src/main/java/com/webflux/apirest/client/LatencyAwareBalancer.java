@@ -0,0 +1,125 @@
+package com.webflux.apirest.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Power of two choices over peak EWMA latency times outstanding calls: two random instances are compared and
+// the cheaper one wins, so a slow or overloaded instance gets less traffic without being starved of probes
+class LatencyAwareBalancer {
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Map<URI, Stats> stats = new ConcurrentHashMap<>();
+    private final long failurePenaltyNanos;
+
+    LatencyAwareBalancer(Duration failurePenalty) {
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+    }
+
+    URI choose(List<URI> instances, URI avoid) {
+        List<URI> candidates = instances;
+        if (avoid != null && instances.size() > 1) {
+            candidates = new ArrayList<>(instances);
+            candidates.remove(avoid);
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        if (stats.size() > instances.size() * 2) {
+            stats.keySet().retainAll(instances);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        URI a = candidates.get(first);
+        URI b = candidates.get(second);
+        return stats(a).cost() <= stats(b).cost() ? a : b;
+    }
+
+    Call start(URI instance) {
+        Stats instanceStats = stats(instance);
+        instanceStats.inflight.incrementAndGet();
+        return new Call(instanceStats);
+    }
+
+    private Stats stats(URI instance) {
+        return stats.computeIfAbsent(instance, key -> new Stats());
+    }
+
+    class Call {
+        private final Stats stats;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Call(Stats stats) {
+            this.stats = stats;
+        }
+
+        void succeeded() {
+            if (done.compareAndSet(false, true)) {
+                stats.inflight.decrementAndGet();
+                stats.observe(System.nanoTime() - start);
+            }
+        }
+
+        void failed() {
+            if (done.compareAndSet(false, true)) {
+                stats.inflight.decrementAndGet();
+                stats.observe(Math.max(System.nanoTime() - start, failurePenaltyNanos));
+            }
+        }
+
+        // A hedge that lost would have taken longer than the one that won, by how much is unknown. It is
+        // charged as a failure until a response of its own replaces the penalty, charging the time until
+        // cancellation would make it look as fast as the hedge delay
+        void cancelled() {
+            if (done.compareAndSet(false, true)) {
+                stats.inflight.decrementAndGet();
+                stats.penalize(Math.max(System.nanoTime() - start, failurePenaltyNanos));
+            }
+        }
+    }
+
+    private static class Stats {
+        private final AtomicInteger inflight = new AtomicInteger();
+        private double ewma;
+        private long updated = System.nanoTime();
+        private boolean penalized;
+
+        // Peak EWMA: a slower response counts in full at once, faster ones decay the estimate towards them
+        synchronized void observe(long nanos) {
+            double current = decayed();
+            double weight = Math.exp(-(System.nanoTime() - updated) / DECAY_NANOS);
+            ewma = nanos > current || penalized ? nanos : current * weight + nanos * (1 - weight);
+            updated = System.nanoTime();
+            penalized = false;
+        }
+
+        synchronized void penalize(long nanos) {
+            if (nanos > decayed()) {
+                ewma = nanos;
+                updated = System.nanoTime();
+                penalized = true;
+            }
+        }
+
+        // Idle instances drift back to zero so they are tried again
+        synchronized double cost() {
+            return (decayed() + 1) * (inflight.get() + 1);
+        }
+
+        private double decayed() {
+            return ewma * Math.exp(-(System.nanoTime() - updated) / DECAY_NANOS);
+        }
+    }
+}
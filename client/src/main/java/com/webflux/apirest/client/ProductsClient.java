@@ -0,0 +1,314 @@
+package com.webflux.apirest.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webflux.apirest.client.model.Product;
+import com.webflux.apirest.client.model.ProductPage;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Calls service-products on the instance the balancer picks for each attempt. Reads are hedged and retried,
+// PUT and DELETE are retried, POST and PATCH are sent once since the server cannot tell a replay apart
+public class ProductsClient {
+    public static final String SERVICE_ID = "service-products";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String BASE_PATH = "/api/v2/products";
+
+    private final WebClient webClient;
+    private final InstanceSource instances;
+    private final LatencyAwareBalancer balancer;
+    private final Duration callTimeout;
+    private final Duration hedgeDelay;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final RetryBudget retryBudget;
+
+    private ProductsClient(Builder builder) {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .build();
+        this.webClient = builder.webClientBuilder.clone()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        this.instances = builder.instances;
+        this.balancer = new LatencyAwareBalancer(builder.callTimeout);
+        this.callTimeout = builder.callTimeout;
+        this.hedgeDelay = builder.hedgeDelay;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoff = builder.retryBackoff;
+        this.retryBudget = builder.retryBudget;
+    }
+
+    public static Builder builder(InstanceSource instances) {
+        return new Builder(instances);
+    }
+
+    // Empty when there is no such product, a 404 is an answer and is neither hedged nor retried
+    public Mono<Product> findById(String id) {
+        return read(instance -> call(instance, HttpMethod.GET, uri(instance, "/{id}", id), null,
+                response -> optional(response, Product.class)))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    // cursor null for the first page, size null for the server default
+    public Mono<ProductPage> list(String cursor, Integer size) {
+        return read(instance -> call(instance, HttpMethod.GET, listUri(instance, cursor, size), null,
+                response -> response.statusCode().is2xxSuccessful()
+                        ? response.bodyToFlux(Product.class).collectList()
+                        .map(products -> new ProductPage(products,
+                                response.headers().asHttpHeaders().getFirst(NEXT_CURSOR_HEADER)))
+                        : response.createException().flatMap(Mono::error)));
+    }
+
+    // The whole catalog as NDJSON, an attempt is only retried while nothing has been emitted yet,
+    // after that a failure reaches the subscriber since the items already seen cannot be taken back
+    public Flux<Product> stream() {
+        return Flux.defer(() -> {
+            retryBudget.deposit();
+            AtomicBoolean emitted = new AtomicBoolean();
+            return instances.instances()
+                    .flatMapMany(list -> streamFrom(balancer.choose(list, null)))
+                    .doOnNext(product -> emitted.set(true))
+                    .retryWhen(retry(e -> !emitted.get() && retryable(e)));
+        });
+    }
+
+    public Mono<Product> create(Product product) {
+        return once(instance -> call(instance, HttpMethod.POST, uri(instance, "", null), product,
+                response -> response.statusCode().is2xxSuccessful()
+                        ? response.bodyToMono(Product.class)
+                        : response.createException().flatMap(Mono::error)));
+    }
+
+    public Mono<Product> update(String id, Product product) {
+        return retried(instance -> call(instance, HttpMethod.PUT, uri(instance, "/{id}", id), product,
+                response -> optional(response, Product.class)))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    // Null fields are left unchanged, the version is required and a stale one fails with 409
+    public Mono<Product> patch(String id, Product changes) {
+        return once(instance -> call(instance, HttpMethod.PATCH, uri(instance, "/{id}", id), changes,
+                response -> optional(response, Product.class)))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    // False when there was nothing to delete, which is also what a retry after a lost response sees
+    public Mono<Boolean> delete(String id) {
+        return retried(instance -> call(instance, HttpMethod.DELETE, uri(instance, "/{id}", id), null,
+                response -> {
+                    if (response.statusCode() == HttpStatus.NOT_FOUND) {
+                        return response.releaseBody().thenReturn(false);
+                    }
+                    return response.statusCode().is2xxSuccessful()
+                            ? response.releaseBody().thenReturn(true)
+                            : response.createException().flatMap(Mono::error);
+                }));
+    }
+
+    private <T> Mono<T> once(Function<URI, Mono<T>> attempt) {
+        return instances.instances()
+                .flatMap(list -> attempt.apply(balancer.choose(list, null)));
+    }
+
+    private <T> Mono<T> retried(Function<URI, Mono<T>> attempt) {
+        return Mono.defer(() -> {
+            retryBudget.deposit();
+            return once(attempt).retryWhen(retry(ProductsClient::retryable));
+        });
+    }
+
+    // A second attempt goes to another instance if the first has not answered within the hedge delay,
+    // whichever answers first wins and the other is cancelled
+    private <T> Mono<T> read(Function<URI, Mono<T>> attempt) {
+        Mono<T> hedged = instances.instances().flatMap(list -> {
+            URI first = balancer.choose(list, null);
+            if (hedgeDelay == null || list.size() < 2) {
+                return attempt.apply(first);
+            }
+            return Mono.firstWithValue(attempt.apply(first),
+                            Mono.delay(hedgeDelay).then(Mono.defer(() -> attempt.apply(balancer.choose(list, first)))))
+                    .onErrorMap(NoSuchElementException.class, ProductsClient::firstFailure);
+        });
+        return Mono.defer(() -> {
+            retryBudget.deposit();
+            return hedged.retryWhen(retry(ProductsClient::retryable));
+        });
+    }
+
+    private <T> Mono<T> call(URI instance, HttpMethod method, URI uri, Object body,
+                             Function<ClientResponse, Mono<T>> handler) {
+        return Mono.defer(() -> {
+            LatencyAwareBalancer.Call stats = balancer.start(instance);
+            WebClient.RequestBodySpec request = webClient.method(method)
+                    .uri(uri)
+                    .accept(MediaType.APPLICATION_JSON);
+            WebClient.RequestHeadersSpec<?> spec = body == null ? request
+                    : request.contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+            return spec.exchangeToMono(handler)
+                    .timeout(callTimeout)
+                    .doOnSuccess(value -> stats.succeeded())
+                    .doOnError(e -> {
+                        if (serverFailure(e)) {
+                            stats.failed();
+                        } else {
+                            stats.succeeded();
+                        }
+                    })
+                    .doOnCancel(stats::cancelled);
+        });
+    }
+
+    // Only the first item is bound by the call timeout, the rest of a large catalog takes as long as it takes
+    private Flux<Product> streamFrom(URI instance) {
+        return Flux.defer(() -> {
+            LatencyAwareBalancer.Call stats = balancer.start(instance);
+            return webClient.get()
+                    .uri(uri(instance, "", null))
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    .bodyToFlux(Product.class)
+                    .timeout(Mono.delay(callTimeout), product -> Mono.never())
+                    .doOnNext(product -> stats.succeeded())
+                    .doOnComplete(stats::succeeded)
+                    .doOnError(e -> stats.failed())
+                    .doOnCancel(stats::cancelled);
+        });
+    }
+
+    private Retry retry(Predicate<Throwable> retryable) {
+        return Retry.backoff(maxRetries, retryBackoff)
+                .filter(e -> retryable.test(e) && retryBudget.tryWithdraw())
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private static <T> Mono<Optional<T>> optional(ClientResponse response, Class<T> type) {
+        if (response.statusCode() == HttpStatus.NOT_FOUND) {
+            return response.releaseBody().thenReturn(Optional.empty());
+        }
+        return response.statusCode().is2xxSuccessful()
+                ? response.bodyToMono(type).map(Optional::of)
+                : response.createException().flatMap(Mono::error);
+    }
+
+    // Connection failures, timeouts and gateway errors may succeed elsewhere, anything else would fail again
+    private static boolean retryable(Throwable e) {
+        if (e instanceof WebClientRequestException || e instanceof TimeoutException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException) {
+            int status = ((WebClientResponseException) e).getRawStatusCode();
+            return status == 502 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    private static boolean serverFailure(Throwable e) {
+        return retryable(e) || e instanceof WebClientResponseException
+                && ((WebClientResponseException) e).getStatusCode().is5xxServerError();
+    }
+
+    // firstWithValue reports every failed attempt in a composite cause, the primary's comes first
+    private static Throwable firstFailure(NoSuchElementException e) {
+        if (e.getCause() == null) {
+            return e;
+        }
+        List<Throwable> failures = Exceptions.unwrapMultiple(e.getCause());
+        return failures.isEmpty() ? e : failures.get(0);
+    }
+
+    private static URI uri(URI instance, String path, String id) {
+        return UriComponentsBuilder.fromUri(instance)
+                .path(BASE_PATH.concat(path))
+                .buildAndExpand(id == null ? new Object[0] : new Object[]{id})
+                .encode()
+                .toUri();
+    }
+
+    private static URI listUri(URI instance, String cursor, Integer size) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUri(instance).path(BASE_PATH);
+        if (cursor != null) {
+            builder.queryParam("cursor", "{cursor}");
+        }
+        if (size != null) {
+            builder.queryParam("size", size);
+        }
+        return builder.buildAndExpand(cursor == null ? new Object[0] : new Object[]{cursor}).encode().toUri();
+    }
+
+    public static class Builder {
+        private final InstanceSource instances;
+        private WebClient.Builder webClientBuilder = WebClient.builder();
+        private Duration callTimeout = Duration.ofSeconds(2);
+        private Duration hedgeDelay = Duration.ofMillis(100);
+        private int maxRetries = 2;
+        private Duration retryBackoff = Duration.ofMillis(50);
+        private RetryBudget retryBudget = new RetryBudget(0.2, 10);
+
+        private Builder(InstanceSource instances) {
+            this.instances = instances;
+        }
+
+        public Builder webClientBuilder(WebClient.Builder webClientBuilder) {
+            this.webClientBuilder = webClientBuilder;
+            return this;
+        }
+
+        public Builder callTimeout(Duration callTimeout) {
+            this.callTimeout = callTimeout;
+            return this;
+        }
+
+        // Null turns hedging off, set it around the p95 of a read so only the slow tail is sent twice
+        public Builder hedgeDelay(Duration hedgeDelay) {
+            this.hedgeDelay = hedgeDelay;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder retryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        public Builder retryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        public ProductsClient build() {
+            return new ProductsClient(this);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.webflux.apirest.client;
+
+// Caps retries at a share of the calls plus a small reserve per second, so a failing service gets a bounded
+// amount of extra load instead of every call multiplied by the retry count
+public class RetryBudget {
+    private final double ratio;
+    private final double minPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long updated;
+
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        if (ratio < 0 || minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("Retry budget ratio and reserve must not be negative");
+        }
+        this.ratio = ratio;
+        this.minPerSecond = minRetriesPerSecond;
+        this.capacity = Math.max(10, minRetriesPerSecond * 10);
+        this.tokens = minRetriesPerSecond;
+        this.updated = System.nanoTime();
+    }
+
+    public synchronized void deposit() {
+        refill();
+        tokens = Math.min(capacity, tokens + ratio);
+    }
+
+    public synchronized boolean tryWithdraw() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - updated) / 1e9 * minPerSecond);
+        updated = now;
+    }
+}
@@ -0,0 +1,13 @@
+package com.webflux.apirest.client.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Category {
+    private String id;
+    private String name;
+}
@@ -0,0 +1,29 @@
+package com.webflux.apirest.client.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Product {
+    private String id;
+    private String name;
+    private Double price;
+    private Date createAt;
+    private Date updateAt;
+    private Category category;
+    private String picture;
+    private Map<String, String> thumbnails;
+    private Long version;
+
+    public Product(String name, Double price, Category category) {
+        this.name = name;
+        this.price = price;
+        this.category = category;
+    }
+}
@@ -0,0 +1,14 @@
+package com.webflux.apirest.client.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductPage {
+    private List<Product> products;
+    // Pass back to list for the following page, null on the last one
+    private String next;
+}
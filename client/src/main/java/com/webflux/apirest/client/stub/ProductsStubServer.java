@@ -0,0 +1,225 @@
+package com.webflux.apirest.client.stub;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webflux.apirest.client.ProductsClient;
+import com.webflux.apirest.client.model.Product;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// In-memory stand-in for the /api/v2/products routes of service-products, for tests of code that uses the
+// client. Latency and failures can be injected to see hedging and retries at work without a cluster
+public class ProductsStubServer implements AutoCloseable {
+    private static final String BASE_PATH = "/api/v2/products";
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private final NavigableMap<String, Product> products = new ConcurrentSkipListMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger failureStatus = new AtomicInteger(503);
+    private final AtomicReference<Duration> latency = new AtomicReference<>(Duration.ZERO);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+    private DisposableServer server;
+
+    public ProductsStubServer start() {
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .handle(this::handle)
+                .bindNow();
+        return this;
+    }
+
+    public URI uri() {
+        return URI.create("http://localhost:" + server.port());
+    }
+
+    public Product put(Product product) {
+        if (product.getId() == null) {
+            product.setId(nextId());
+        }
+        if (product.getVersion() == null) {
+            product.setVersion(0L);
+        }
+        products.put(product.getId(), product);
+        return product;
+    }
+
+    // Applied before every response, including injected failures
+    public ProductsStubServer latency(Duration latency) {
+        this.latency.set(latency);
+        return this;
+    }
+
+    // The next count requests are answered with status and no body
+    public ProductsStubServer failNext(int count, int status) {
+        failureStatus.set(status);
+        failures.set(count);
+        return this;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        requests.incrementAndGet();
+        Mono<Void> delay = latency.get().isZero() ? Mono.empty() : Mono.delay(latency.get()).then();
+        return delay.then(Mono.defer(() -> {
+            if (failures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                return response.status(failureStatus.get()).send().then();
+            }
+            return route(request, response);
+        }));
+    }
+
+    private Mono<Void> route(HttpServerRequest request, HttpServerResponse response) {
+        String path = request.fullPath();
+        if (path.equals(BASE_PATH)) {
+            if (request.method() == HttpMethod.GET) {
+                return list(request, response);
+            }
+            if (request.method() == HttpMethod.POST) {
+                return body(request).flatMap(product -> {
+                    product.setId(null);
+                    product.setVersion(null);
+                    if (product.getCreateAt() == null) {
+                        product.setCreateAt(new Date());
+                    }
+                    product.setUpdateAt(new Date());
+                    Product created = put(product);
+                    response.header(HttpHeaderNames.LOCATION, BASE_PATH + "/" + created.getId());
+                    return json(response.status(HttpResponseStatus.CREATED), created);
+                });
+            }
+        } else if (path.startsWith(BASE_PATH + "/")) {
+            String id = path.substring(BASE_PATH.length() + 1);
+            Product existing = products.get(id);
+            if (existing == null) {
+                return response.status(HttpResponseStatus.NOT_FOUND).send().then();
+            }
+            if (request.method() == HttpMethod.GET) {
+                return json(response, existing);
+            }
+            if (request.method() == HttpMethod.DELETE) {
+                products.remove(id);
+                return response.status(HttpResponseStatus.NO_CONTENT).send().then();
+            }
+            if (request.method() == HttpMethod.PUT) {
+                return body(request).flatMap(product -> {
+                    existing.setName(product.getName());
+                    existing.setPrice(product.getPrice());
+                    existing.setCategory(product.getCategory());
+                    return json(response, updated(existing));
+                });
+            }
+            if (request.method() == HttpMethod.PATCH) {
+                return body(request).flatMap(changes -> {
+                    if (changes.getVersion() == null || !changes.getVersion().equals(existing.getVersion())) {
+                        return response.status(HttpResponseStatus.CONFLICT).send().then();
+                    }
+                    if (changes.getName() != null) {
+                        existing.setName(changes.getName());
+                    }
+                    if (changes.getPrice() != null) {
+                        existing.setPrice(changes.getPrice());
+                    }
+                    if (changes.getCategory() != null) {
+                        existing.setCategory(changes.getCategory());
+                    }
+                    return json(response, updated(existing));
+                });
+            }
+        }
+        return response.status(HttpResponseStatus.METHOD_NOT_ALLOWED).send().then();
+    }
+
+    // Keyset pages over the ids, as the real service does by default
+    private Mono<Void> list(HttpServerRequest request, HttpServerResponse response) {
+        String accept = request.requestHeaders().get(HttpHeaderNames.ACCEPT, "");
+        if (accept.contains(MediaType.APPLICATION_NDJSON_VALUE)) {
+            response.header(HttpHeaderNames.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE);
+            return response.sendString(Flux.fromIterable(products.values()).map(product -> write(product) + "\n"))
+                    .then();
+        }
+        Map<String, List<String>> params = new QueryStringDecoder(request.uri())
+                .parameters();
+        String cursor = params.containsKey("cursor") ? params.get("cursor").get(0) : null;
+        int size = params.containsKey("size") ? Integer.parseInt(params.get("size").get(0)) : DEFAULT_PAGE_SIZE;
+        List<Product> page = new ArrayList<>(cursor == null ? products.values()
+                : products.tailMap(cursor, false).values());
+        if (page.size() > size) {
+            page = page.subList(0, size);
+            response.header(ProductsClient.NEXT_CURSOR_HEADER, page.get(size - 1).getId());
+        }
+        return json(response, page);
+    }
+
+    private Mono<Product> body(HttpServerRequest request) {
+        return request.receive().aggregate().asString().map(body -> {
+            try {
+                return objectMapper.readValue(body, Product.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        });
+    }
+
+    private Mono<Void> json(HttpServerResponse response, Object body) {
+        return response.header(HttpHeaderNames.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .sendString(Mono.just(write(body)))
+                .then();
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Product updated(Product product) {
+        product.setVersion(product.getVersion() + 1);
+        product.setUpdateAt(new Date());
+        return product;
+    }
+
+    private String nextId() {
+        return String.format("%024x", ids.incrementAndGet());
+    }
+}
@@ -0,0 +1,189 @@
+package com.webflux.apirest.client;
+
+import com.webflux.apirest.client.model.Category;
+import com.webflux.apirest.client.model.Product;
+import com.webflux.apirest.client.model.ProductPage;
+import com.webflux.apirest.client.stub.ProductsStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+class ProductsClientTests {
+
+	private ProductsStubServer first;
+	private ProductsStubServer second;
+
+	@BeforeEach
+	void start() {
+		first = new ProductsStubServer().start();
+		second = new ProductsStubServer().start();
+	}
+
+	@AfterEach
+	void stop() {
+		first.close();
+		second.close();
+	}
+
+	@Test
+	void crudTest() {
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri())).build();
+		Category category = new Category("1", "Electronic");
+
+		Product created = client.create(new Product("Radio", 40.0, category)).block();
+		Assertions.assertNotNull(created.getId());
+		Assertions.assertEquals(0L, created.getVersion());
+
+		StepVerifier.create(client.findById(created.getId()))
+				.assertNext(product -> Assertions.assertEquals("Radio", product.getName()))
+				.verifyComplete();
+
+		StepVerifier.create(client.update(created.getId(), new Product("Radio FM", 45.0, category)))
+				.assertNext(product -> Assertions.assertEquals(1L, product.getVersion()))
+				.verifyComplete();
+
+		Product changes = new Product();
+		changes.setPrice(50.0);
+		changes.setVersion(1L);
+		StepVerifier.create(client.patch(created.getId(), changes))
+				.assertNext(product -> {
+					Assertions.assertEquals("Radio FM", product.getName());
+					Assertions.assertEquals(50.0, product.getPrice());
+				})
+				.verifyComplete();
+
+		// The version is stale now
+		StepVerifier.create(client.patch(created.getId(), changes))
+				.expectErrorMatches(e -> e instanceof WebClientResponseException.Conflict)
+				.verify();
+
+		StepVerifier.create(client.delete(created.getId())).expectNext(true).verifyComplete();
+		StepVerifier.create(client.delete(created.getId())).expectNext(false).verifyComplete();
+		StepVerifier.create(client.findById(created.getId())).verifyComplete();
+	}
+
+	@Test
+	void listAndStreamTest() {
+		for (int i = 0; i < 5; i++) {
+			first.put(new Product("Product " + i, 10.0 * i, null));
+		}
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri())).build();
+
+		ProductPage page = client.list(null, 3).block();
+		Assertions.assertEquals(3, page.getProducts().size());
+		Assertions.assertNotNull(page.getNext());
+		ProductPage last = client.list(page.getNext(), 3).block();
+		Assertions.assertEquals(2, last.getProducts().size());
+		Assertions.assertNull(last.getNext());
+
+		List<Product> products = client.stream().collectList().block();
+		Assertions.assertEquals(5, products.size());
+		Assertions.assertEquals("Product 4", products.get(4).getName());
+	}
+
+	@Test
+	void retryTest() {
+		Product product = first.put(new Product("TV", 250.0, null));
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri()))
+				.retryBackoff(Duration.ofMillis(1))
+				.build();
+
+		first.failNext(2, 503);
+		StepVerifier.create(client.findById(product.getId()))
+				.assertNext(found -> Assertions.assertEquals("TV", found.getName()))
+				.verifyComplete();
+		Assertions.assertEquals(3, first.requestCount());
+
+		first.failNext(1, 503);
+		StepVerifier.create(client.stream())
+				.expectNextCount(1)
+				.verifyComplete();
+
+		// A 500 is not a gateway error, a retry would fail the same way
+		first.failNext(1, 500);
+		StepVerifier.create(client.findById(product.getId()))
+				.expectError(WebClientResponseException.InternalServerError.class)
+				.verify();
+	}
+
+	@Test
+	void createNotRetriedTest() {
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri()))
+				.retryBackoff(Duration.ofMillis(1))
+				.build();
+
+		first.failNext(1, 503);
+		StepVerifier.create(client.create(new Product("Radio", 40.0, null)))
+				.expectError(WebClientResponseException.ServiceUnavailable.class)
+				.verify();
+		Assertions.assertEquals(1, first.requestCount());
+	}
+
+	@Test
+	void retryBudgetTest() {
+		Product product = first.put(new Product("TV", 250.0, null));
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri()))
+				.retryBackoff(Duration.ofMillis(1))
+				.retryBudget(new RetryBudget(0, 0))
+				.build();
+
+		first.failNext(1, 503);
+		StepVerifier.create(client.findById(product.getId()))
+				.expectError(WebClientResponseException.ServiceUnavailable.class)
+				.verify();
+		Assertions.assertEquals(1, first.requestCount());
+	}
+
+	@Test
+	void hedgeTest() {
+		first.put(new Product("1", "TV", 250.0, null, null, null, null, null, 0L));
+		second.put(new Product("1", "TV", 250.0, null, null, null, null, null, 0L));
+		// Warms up the shared connection pool to both instances so that only the injected latency is timed
+		ProductsClient.builder(InstanceSource.of(first.uri())).build().findById("1").block();
+		ProductsClient.builder(InstanceSource.of(second.uri())).build().findById("1").block();
+		first.latency(Duration.ofSeconds(1));
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri(), second.uri()))
+				.hedgeDelay(Duration.ofMillis(50))
+				.build();
+
+		// If the slow instance is asked first the hedge to the other one answers long before it would
+		long start = System.nanoTime();
+		StepVerifier.create(client.findById("1"))
+				.assertNext(product -> Assertions.assertEquals("TV", product.getName()))
+				.verifyComplete();
+		Assertions.assertTrue(System.nanoTime() - start < Duration.ofMillis(900).toNanos());
+
+		// Once it has been seen to be slow the balancer sends reads to the fast one
+		client.findById("1").block();
+		int before = first.requestCount();
+		for (int i = 0; i < 10; i++) {
+			client.findById("1").block();
+		}
+		Assertions.assertEquals(before, first.requestCount());
+	}
+
+	@Test
+	void timeoutTest() {
+		first.put(new Product("1", "TV", 250.0, null, null, null, null, null, 0L));
+		// Warms up the shared connection pool outside the timeout so that both attempts reach the server
+		ProductsClient.builder(InstanceSource.of(first.uri())).build().findById("1").block();
+		ProductsClient client = ProductsClient.builder(InstanceSource.of(first.uri()))
+				.callTimeout(Duration.ofMillis(300))
+				.retryBackoff(Duration.ofMillis(1))
+				.maxRetries(1)
+				.build();
+
+		first.latency(Duration.ofSeconds(1));
+		StepVerifier.create(client.findById("1"))
+				.expectError(TimeoutException.class)
+				.verify();
+		Assertions.assertEquals(3, first.requestCount());
+	}
+}
@@ -0,0 +1,63 @@
+// Large list responses with and without gzip, one scenario after the other so their results do not overlap.
+// Compare data_received and http_req_duration per scenario in the summary:
+//   k6 run -e BASE_URL=http://localhost:8002 -e SEED=5000 load/list-compression.js
+// Start the service with --config.limits.enabled=false, otherwise the rate limiter shapes the result.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8002';
+const SEED = parseInt(__ENV.SEED || '0', 10);
+const VUS = parseInt(__ENV.VUS || '20', 10);
+const DURATION = __ENV.DURATION || '1m';
+
+export const options = {
+    scenarios: {
+        identity: {
+            executor: 'constant-vus', vus: VUS, duration: DURATION, exec: 'identity',
+        },
+        gzip: {
+            executor: 'constant-vus', vus: VUS, duration: DURATION, exec: 'gzip', startTime: DURATION,
+        },
+    },
+    thresholds: {
+        // Listed per scenario so the summary breaks both metrics down
+        'data_received{scenario:identity}': ['count>=0'],
+        'data_received{scenario:gzip}': ['count>=0'],
+        'http_req_duration{scenario:identity}': ['p(95)>=0'],
+        'http_req_duration{scenario:gzip}': ['p(95)>=0'],
+    },
+};
+
+// Optional, bulk inserts SEED products into the category of the first product so the lists are large
+export function setup() {
+    if (SEED <= 0) {
+        return;
+    }
+    const first = http.get(`${BASE_URL}/api/v2/products?size=1`).json();
+    const category = first[0].category;
+    const products = [];
+    for (let i = 0; i < SEED; i++) {
+        products.push(JSON.stringify({ name: `Load ${i}`, price: 10 + (i % 500), category }));
+    }
+    const res = http.post(`${BASE_URL}/api/v2/products/bulk`, products.join('\n'), {
+        headers: { 'Content-Type': 'application/x-ndjson' },
+        timeout: '120s',
+    });
+    check(res, { 'seeded': (r) => r.status === 200 });
+}
+
+function lists(encoding) {
+    const headers = { 'Accept': 'application/json', 'Accept-Encoding': encoding };
+    const page = http.get(`${BASE_URL}/api/v2/products?size=100`, { headers, tags: { list: 'page' } });
+    check(page, { 'page ok': (r) => r.status === 200 });
+    const all = http.get(`${BASE_URL}/api/v2/products?all=true`, { headers, tags: { list: 'all' } });
+    check(all, { 'all ok': (r) => r.status === 200 });
+}
+
+export function identity() {
+    lists('identity');
+}
+
+export function gzip() {
+    lists('gzip');
+}
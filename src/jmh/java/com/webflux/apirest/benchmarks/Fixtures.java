@@ -0,0 +1,134 @@
+package com.webflux.apirest.benchmarks;
+
+import com.webflux.apirest.CacheConfig;
+import com.webflux.apirest.core.ProductOperations;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.repositories.ProductRepository;
+import com.webflux.apirest.models.services.MongoRouting;
+import com.webflux.apirest.models.services.ProductBatchLoader;
+import com.webflux.apirest.models.services.ProductService;
+import com.webflux.apirest.models.services.ProductServiceImpl;
+import org.bson.types.ObjectId;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.validation.Validator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+final class Fixtures {
+    private static final Category[] CATEGORIES = {
+            new Category(new ObjectId().toHexString(), "Electronic"),
+            new Category(new ObjectId().toHexString(), "Video Games"),
+            new Category(new ObjectId().toHexString(), "Computer"),
+            new Category(new ObjectId().toHexString(), "Phones")
+    };
+
+    private Fixtures() {
+    }
+
+    static Category category() {
+        return CATEGORIES[0];
+    }
+
+    static Product product(int index) {
+        Product product = new Product("Product " + index, 100.0 + index, CATEGORIES[index % CATEGORIES.length]);
+        product.setId(new ObjectId().toHexString());
+        product.setCreateAt(new Date());
+        product.setVersion(0L);
+        return product;
+    }
+
+    static List<Product> catalog(int size) {
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(product(i));
+        }
+        return products;
+    }
+
+    // Started, the caller stops it in its tear down
+    static ProductBatchLoader batchLoader(ProductRepository productRepository) {
+        ProductBatchLoader batchLoader = new ProductBatchLoader();
+        ReflectionTestUtils.setField(batchLoader, "productRepository", productRepository);
+        ReflectionTestUtils.setField(batchLoader, "window", Duration.ofMillis(2));
+        ReflectionTestUtils.setField(batchLoader, "maxSize", 100);
+        ReflectionTestUtils.setField(batchLoader, "timeout", Duration.ofSeconds(5));
+        batchLoader.start();
+        return batchLoader;
+    }
+
+    // Wired as the application would, with nothing configured every operation stays on the in-memory repository
+    static ProductServiceImpl productService(ProductRepository productRepository, ProductBatchLoader batchLoader) {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "maxSize", 10_000L);
+        ReflectionTestUtils.setField(cacheConfig, "ttl", Duration.ofMinutes(5));
+        MongoRouting mongoRouting = new MongoRouting();
+        ReflectionTestUtils.setField(mongoRouting, "productRepository", productRepository);
+        ProductServiceImpl productService = new ProductServiceImpl();
+        ReflectionTestUtils.setField(productService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(productService, "mongoRouting", mongoRouting);
+        ReflectionTestUtils.setField(productService, "productBatchLoader", batchLoader);
+        ReflectionTestUtils.setField(productService, "productCache", cacheConfig.productCache());
+        ReflectionTestUtils.setField(productService, "maxReplayRepeat", 10_000);
+        ReflectionTestUtils.setField(productService, "maxReplayProducts", 10_000);
+        return productService;
+    }
+
+    static ProductOperations productOperations(ProductService productService, Validator validator) {
+        ProductOperations productOperations = new ProductOperations();
+        ReflectionTestUtils.setField(productOperations, "productService", productService);
+        ReflectionTestUtils.setField(productOperations, "validator", validator);
+        return productOperations;
+    }
+
+    // In-memory stand-in for Mongo, only the finders the benchmarked pipelines call are backed
+    static ProductRepository productRepository(List<Product> products) {
+        Map<String, Product> byId = products.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findAll":
+                            if (args == null || args.length == 0) {
+                                return Flux.fromIterable(products);
+                            }
+                            break;
+                        case "findAllById":
+                            if (args[0] instanceof Iterable) {
+                                return Flux.fromIterable((Iterable<?>) args[0]).mapNotNull(byId::get);
+                            }
+                            break;
+                        case "findById":
+                            if (args[0] instanceof String) {
+                                return Mono.justOrEmpty(byId.get(args[0]));
+                            }
+                            break;
+                        case "save":
+                            if (args[0] instanceof Product) {
+                                Product product = (Product) args[0];
+                                if (product.getId() == null) {
+                                    product.setId(new ObjectId().toHexString());
+                                }
+                                return Mono.just(product);
+                            }
+                            break;
+                        case "toString":
+                            return "InMemoryProductRepository";
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,94 @@
+package com.webflux.apirest.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// default is Boot's ObjectMapper as it was, tuned adds the accessors JsonConfig sets up. Run with -prof gc
+// to compare the allocation per operation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonCodecBenchmark {
+    private static final ResolvableType PRODUCT_LIST = ResolvableType.forClassWithGenerics(List.class, Product.class);
+
+    @Param({"default", "tuned"})
+    private String codec;
+
+    private ObjectMapper objectMapper;
+    private Jackson2JsonEncoder encoder;
+    private NettyDataBufferFactory bufferFactory;
+    private Product product;
+    private byte[] productJson;
+    private Category category;
+    private byte[] categoryJson;
+    private List<Product> page;
+
+    @Setup
+    public void setup() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("tuned".equals(codec)) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        objectMapper = builder.build();
+        encoder = new Jackson2JsonEncoder(objectMapper);
+        bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        product = Fixtures.product(1);
+        productJson = objectMapper.writeValueAsBytes(product);
+        category = Fixtures.category();
+        categoryJson = objectMapper.writeValueAsBytes(category);
+        page = Fixtures.catalog(20);
+    }
+
+    @Benchmark
+    public byte[] encodeProduct() throws IOException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public Product decodeProduct() throws IOException {
+        return objectMapper.readValue(productJson, Product.class);
+    }
+
+    @Benchmark
+    public byte[] encodeCategory() throws IOException {
+        return objectMapper.writeValueAsBytes(category);
+    }
+
+    @Benchmark
+    public Category decodeCategory() throws IOException {
+        return objectMapper.readValue(categoryJson, Category.class);
+    }
+
+    // A default size list page the way the encoder writes it into a response buffer
+    @Benchmark
+    public int encodePage() {
+        DataBuffer buffer = encoder.encodeValue(page, bufferFactory, PRODUCT_LIST, MediaType.APPLICATION_JSON,
+                Collections.emptyMap());
+        int size = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+}
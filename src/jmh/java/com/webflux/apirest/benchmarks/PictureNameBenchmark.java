@@ -0,0 +1,25 @@
+package com.webflux.apirest.benchmarks;
+
+import com.webflux.apirest.models.services.PictureServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PictureNameBenchmark {
+    @Param({"tv.jpg", "My Holiday Picture: 2022\\front view.JPEG", "no-extension"})
+    private String filename;
+
+    @Benchmark
+    public String sanitize() {
+        return PictureServiceImpl.extension(PictureServiceImpl.sanitize(filename));
+    }
+}
@@ -0,0 +1,70 @@
+package com.webflux.apirest.benchmarks;
+
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.repositories.ProductRepository;
+import com.webflux.apirest.models.services.ProductBatchLoader;
+import com.webflux.apirest.models.services.ProductServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductServiceBenchmark {
+    @Param({"100", "1000"})
+    private int catalogSize;
+
+    private ProductServiceImpl productService;
+    private ProductBatchLoader batchLoader;
+    private String hotId;
+    private List<String> coldIds;
+
+    @Setup
+    public void setup() {
+        List<Product> products = Fixtures.catalog(catalogSize);
+        ProductRepository productRepository = Fixtures.productRepository(products);
+        batchLoader = Fixtures.batchLoader(productRepository);
+        productService = Fixtures.productService(productRepository, batchLoader);
+        hotId = products.get(0).getId();
+        coldIds = products.stream().limit(64).map(Product::getId).collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchLoader.stop();
+    }
+
+    @Benchmark
+    public List<Product> findAllWithUpperCaseName() {
+        return productService.findAllWithUpperCaseName().collectList().block();
+    }
+
+    // One scan replayed ten times from memory
+    @Benchmark
+    public long findAllWithUpperCaseNameAndRepeat() {
+        return productService.findAllWithUpperCaseNameAndRepeat(10).count().block();
+    }
+
+    @Benchmark
+    public Product findByIdCached() {
+        return productService.findById(hotId).block();
+    }
+
+    // 64 concurrent misses, gathered into one findAllById by the loader
+    @Benchmark
+    public List<Product> findByIdBatched() {
+        return Flux.fromIterable(coldIds).flatMap(batchLoader::load).collectList().block();
+    }
+}
@@ -0,0 +1,124 @@
+package com.webflux.apirest.benchmarks;
+
+import com.webflux.apirest.RouterFunctionConfig;
+import com.webflux.apirest.controllers.ProductController;
+import com.webflux.apirest.core.ProductOperations;
+import com.webflux.apirest.handler.ProductHandler;
+import com.webflux.apirest.metrics.RouteMetrics;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.repositories.ProductRepository;
+import com.webflux.apirest.models.services.ProductBatchLoader;
+import com.webflux.apirest.models.services.ProductServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.reactive.config.EnableWebFlux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The same operations through /api/v2/products and /api/products, over the mock server exchange so only
+// the route style and the rendering differ
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteBenchmark {
+    private ProductBatchLoader batchLoader;
+    private LocalValidatorFactoryBean validator;
+    private WebTestClient functional;
+    private WebTestClient annotated;
+    private AnnotationConfigApplicationContext annotatedContext;
+    private String id;
+    private Product product;
+
+    @Setup
+    public void setup() {
+        List<Product> products = Fixtures.catalog(100);
+        ProductRepository productRepository = Fixtures.productRepository(products);
+        batchLoader = Fixtures.batchLoader(productRepository);
+        ProductServiceImpl productService = Fixtures.productService(productRepository, batchLoader);
+        validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        ProductOperations productOperations = Fixtures.productOperations(productService, validator);
+
+        ProductHandler productHandler = new ProductHandler();
+        ReflectionTestUtils.setField(productHandler, "productOperations", productOperations);
+        ReflectionTestUtils.setField(productHandler, "productService", productService);
+        RouteMetrics routeMetrics = new RouteMetrics();
+        ReflectionTestUtils.setField(routeMetrics, "meterRegistry", new SimpleMeterRegistry());
+        functional = WebTestClient.bindToRouterFunction(new RouterFunctionConfig().routes(productHandler, routeMetrics))
+                .build();
+
+        ProductController productController = new ProductController();
+        ReflectionTestUtils.setField(productController, "productOperations", productOperations);
+        ReflectionTestUtils.setField(productController, "productService", productService);
+        // bindToController would autowire the controller again, a ready instance is registered instead
+        annotatedContext = new AnnotationConfigApplicationContext();
+        annotatedContext.register(WebFluxConfig.class);
+        annotatedContext.getBeanFactory().registerSingleton("productController", productController);
+        annotatedContext.refresh();
+        annotated = WebTestClient.bindToApplicationContext(annotatedContext).build();
+
+        id = products.get(0).getId();
+        product = new Product("Product", 100.0, Fixtures.category());
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchLoader.stop();
+        validator.destroy();
+        annotatedContext.close();
+    }
+
+    @Configuration
+    @EnableWebFlux
+    static class WebFluxConfig {
+    }
+
+    @Benchmark
+    public byte[] viewFunctional() {
+        return view(functional, "/api/v2/products/{id}");
+    }
+
+    @Benchmark
+    public byte[] viewAnnotated() {
+        return view(annotated, "/api/products/{id}");
+    }
+
+    @Benchmark
+    public byte[] createFunctional() {
+        return create(functional, "/api/v2/products");
+    }
+
+    @Benchmark
+    public byte[] createAnnotated() {
+        return create(annotated, "/api/products");
+    }
+
+    private byte[] view(WebTestClient client, String uri) {
+        return client.get().uri(uri, id).accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+    }
+
+    private byte[] create(WebTestClient client, String uri) {
+        return client.post().uri(uri).contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .bodyValue(product)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().returnResult().getResponseBody();
+    }
+}
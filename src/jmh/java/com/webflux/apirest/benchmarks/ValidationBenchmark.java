@@ -0,0 +1,57 @@
+package com.webflux.apirest.benchmarks;
+
+import com.webflux.apirest.core.ProductOperations;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.services.ProductValidationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidationBenchmark {
+    private LocalValidatorFactoryBean validator;
+    private ProductOperations productOperations;
+    private Product valid;
+    private Product invalid;
+
+    @Setup
+    public void setup() {
+        validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        // Validation never reaches the service
+        productOperations = Fixtures.productOperations(null, validator);
+        valid = Fixtures.product(1);
+        invalid = new Product("", null, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validator.destroy();
+    }
+
+    @Benchmark
+    public Product validProduct() {
+        return productOperations.validated(valid);
+    }
+
+    @Benchmark
+    public List<String> invalidProduct() {
+        try {
+            productOperations.validated(invalid);
+            throw new IllegalStateException("The product should not be valid");
+        } catch (ProductValidationException e) {
+            return e.getErrors();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.webflux.apirest;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+    @Value("${config.cache.max-size:10000}")
+    private long maxSize;
+    @Value("${config.cache.ttl:5m}")
+    private Duration ttl;
+
+    @Bean
+    public AsyncCache<String, Product> productCache() {
+        return build();
+    }
+
+    @Bean
+    public AsyncCache<String, Category> categoryCache() {
+        return build();
+    }
+
+    @Bean
+    public AsyncCache<String, Category> categoryByNameCache() {
+        return build();
+    }
+
+    private <V> AsyncCache<String, V> build() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+    }
+}
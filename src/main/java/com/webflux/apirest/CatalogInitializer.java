@@ -0,0 +1,155 @@
+package com.webflux.apirest;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.QueryPlan;
+import com.webflux.apirest.models.services.QueryPlanService;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Runners complete before ApplicationReadyEvent, so readiness only turns to accepting traffic
+// once the indexes exist and the seed catalog, if any, is in place
+@Slf4j
+@Component
+public class CatalogInitializer implements ApplicationRunner {
+
+    public enum SeedMode {
+        // Leave the data alone, the production default
+        NONE,
+        // Insert the seed catalog where it is missing, existing documents are never touched
+        UPSERT,
+        // Drop both collections and load the seed catalog again, for development and tests only
+        RESET
+    }
+
+    private static final List<String> CATEGORIES = Arrays.asList("Electronic", "Video Games", "Computer", "Phones");
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private QueryPlanService queryPlanService;
+    @Value("${config.seed.mode:none}")
+    private SeedMode seedMode;
+    @Value("${config.seed.timeout:2m}")
+    private Duration seedTimeout;
+    @Value("${config.query-plans.check:true}")
+    private boolean checkQueryPlans;
+    @Value("${config.query-plans.fail-on-collscan:false}")
+    private boolean failOnCollectionScan;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Mono<Void> reset = seedMode == SeedMode.RESET
+                ? Mono.when(reactiveMongoTemplate.dropCollection(Product.class),
+                reactiveMongoTemplate.dropCollection(Category.class))
+                : Mono.empty();
+        reset.then(queryPlanService.ensureIndexes())
+                .then(backfillVersions())
+                .then(seedMode == SeedMode.NONE ? Mono.empty() : seed())
+                .block(seedTimeout);
+        if (checkQueryPlans) {
+            checkQueryPlans();
+        }
+    }
+
+    // Documents written before optimistic locking have no version and could never be patched with one
+    private Mono<Void> backfillVersions() {
+        return reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                        new Update().set("version", 0L), Product.class)
+                .doOnNext(result -> {
+                    if (result.getModifiedCount() > 0) {
+                        log.info("Version backfilled on {} products", result.getModifiedCount());
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> seed() {
+        List<WriteModel<Document>> categories = CATEGORIES.stream()
+                .map(name -> upsertByName(new Category(name)))
+                .collect(Collectors.toList());
+        return bulkWrite(Category.class, categories)
+                .thenMany(reactiveMongoTemplate.find(Query.query(Criteria.where("name").in(CATEGORIES)), Category.class))
+                .collectMap(Category::getName, Function.identity())
+                .flatMap(byName -> bulkWrite(Product.class, catalog(byName).stream()
+                        .map(this::upsertByName)
+                        .collect(Collectors.toList())))
+                .then();
+    }
+
+    private static List<Product> catalog(Map<String, Category> categories) {
+        List<Product> products = Arrays.asList(
+                new Product("TV", 250.0, categories.get("Electronic")),
+                new Product("Laptop", 550.0, categories.get("Computer")),
+                new Product("Switch", 350.0, categories.get("Video Games")),
+                new Product("PS5", 500.0, categories.get("Video Games")),
+                new Product("Xbox Series X", 500.0, categories.get("Video Games")),
+                new Product("iPhone 11", 450.0, categories.get("Phones")),
+                new Product("Macbook Pro", 1000.0, categories.get("Computer")),
+                new Product("Mouse", 400.0, categories.get("Electronic")),
+                new Product("Samsung Galaxy", 300.0, categories.get("Phones")));
+        Date createAt = new Date();
+        products.forEach(product -> {
+            product.setCreateAt(createAt);
+            product.setUpdateAt(createAt);
+            product.setVersion(0L);
+        });
+        return products;
+    }
+
+    // $setOnInsert makes a rerun a no-op for every name that already exists
+    private WriteModel<Document> upsertByName(Object entity) {
+        Document document = new Document();
+        reactiveMongoTemplate.getConverter().write(entity, document);
+        document.remove("_id");
+        return new UpdateOneModel<>(new Document("name", document.getString("name")),
+                new Document("$setOnInsert", document), new UpdateOptions().upsert(true));
+    }
+
+    private Mono<BulkWriteResult> bulkWrite(Class<?> type, List<WriteModel<Document>> writes) {
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(type))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .doOnNext(result -> log.info("Seeded {}: {} inserted, {} already present",
+                        reactiveMongoTemplate.getCollectionName(type), result.getUpserts().size(),
+                        result.getMatchedCount()));
+    }
+
+    private void checkQueryPlans() {
+        List<QueryPlan> scans = queryPlanService.explainFinders()
+                .filter(QueryPlan::isCollectionScan)
+                .collectList()
+                .block();
+        if (scans == null || scans.isEmpty()) {
+            log.info("Query plans checked, no collection scans");
+            return;
+        }
+        String finders = scans.stream().map(QueryPlan::getFinder).collect(Collectors.joining(", "));
+        if (failOnCollectionScan) {
+            throw new IllegalStateException("Collection scan in query plans: ".concat(finders));
+        }
+        log.warn("Collection scan in query plans: {}", finders);
+    }
+}
@@ -0,0 +1,33 @@
+package com.webflux.apirest;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// The instance registers as STARTING (eureka.instance.initial-status) during context refresh, long before
+// CatalogInitializer has built the indexes and seeded. Peers only see it UP once readiness accepts traffic
+@Slf4j
+@Component
+public class EurekaStatusPublisher {
+
+    // Absent when eureka.client.enabled is false
+    @Autowired
+    private ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        InstanceInfo.InstanceStatus status = event.getState() == ReadinessState.ACCEPTING_TRAFFIC
+                ? InstanceInfo.InstanceStatus.UP
+                : InstanceInfo.InstanceStatus.OUT_OF_SERVICE;
+        applicationInfoManager.ifAvailable(manager -> {
+            log.info("Readiness {}, Eureka status {}", event.getState(), status);
+            manager.setInstanceStatus(status);
+        });
+    }
+}
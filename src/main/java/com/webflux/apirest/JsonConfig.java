@@ -0,0 +1,16 @@
+package com.webflux.apirest;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JsonConfig {
+    // Boot installs Module beans into the ObjectMapper it hands to the WebFlux CodecConfigurer, so the
+    // Jackson encoder and decoder of both route styles get generated accessors instead of reflection
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,24 @@
+package com.webflux.apirest;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+    @Bean
+    public MeterBinder cacheMetrics(@Qualifier("productCache") AsyncCache<String, Product> productCache,
+                                    @Qualifier("categoryCache") AsyncCache<String, Category> categoryCache,
+                                    @Qualifier("categoryByNameCache") AsyncCache<String, Category> categoryByNameCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, productCache.synchronous(), "products");
+            CaffeineCacheMetrics.monitor(registry, categoryCache.synchronous(), "categories");
+            CaffeineCacheMetrics.monitor(registry, categoryByNameCache.synchronous(), "categoriesByName");
+        };
+    }
+}
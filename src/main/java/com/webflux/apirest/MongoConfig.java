@@ -0,0 +1,55 @@
+package com.webflux.apirest;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Client wide defaults, single service operations can override the read preference and write concern
+// through config.mongo.operations, see MongoRouting
+@Configuration
+public class MongoConfig {
+    @Value("${config.mongo.pool.max-size:100}")
+    private int maxPoolSize;
+    @Value("${config.mongo.pool.min-size:0}")
+    private int minPoolSize;
+    // The 4.x driver has no wait queue size, callers wait at most this long for a connection instead
+    @Value("${config.mongo.pool.max-wait-time:2s}")
+    private Duration maxWaitTime;
+    @Value("${config.mongo.pool.max-connecting:2}")
+    private int maxConnecting;
+    @Value("${config.mongo.pool.max-idle-time:60s}")
+    private Duration maxIdleTime;
+    // Empty leaves whatever the connection string says
+    @Value("${config.mongo.read-preference:}")
+    private String readPreference;
+    @Value("${config.mongo.write-concern:}")
+    private String writeConcern;
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoClientCustomizer() {
+        WriteConcern concern = writeConcern.isEmpty() ? null : WriteConcern.valueOf(writeConcern);
+        if (!writeConcern.isEmpty() && concern == null) {
+            throw new IllegalArgumentException("Unknown write concern ".concat(writeConcern));
+        }
+        return builder -> {
+            if (!readPreference.isEmpty()) {
+                builder.readPreference(ReadPreference.valueOf(readPreference));
+            }
+            if (concern != null) {
+                builder.writeConcern(concern);
+            }
+            builder.applyToConnectionPoolSettings(pool -> pool
+                    .maxSize(maxPoolSize)
+                    .minSize(minPoolSize)
+                    .maxWaitTime(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS)
+                    .maxConnecting(maxConnecting)
+                    .maxConnectionIdleTime(maxIdleTime.toMillis(), TimeUnit.MILLISECONDS));
+        };
+    }
+}
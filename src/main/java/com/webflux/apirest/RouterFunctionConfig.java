@@ -1,8 +1,14 @@
 package com.webflux.apirest;
 
 import com.webflux.apirest.handler.ProductHandler;
+import com.webflux.apirest.limits.RouteCost;
+import com.webflux.apirest.limits.RouteCosts;
+import com.webflux.apirest.metrics.RouteMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
 import org.springframework.web.reactive.function.server.RequestPredicates;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.ServerResponse;
@@ -13,13 +19,58 @@ import static org.springframework.web.reactive.function.server.RouterFunctions.r
 @Configuration
 public class RouterFunctionConfig {
     @Bean
-    public RouterFunction<ServerResponse> routes(ProductHandler productHandler) {
-        return route(GET("/api/v2/products").or(GET("/api/v3/products")), productHandler::list)
+    public RouterFunction<ServerResponse> routes(ProductHandler productHandler, RouteMetrics routeMetrics) {
+        return route(GET("/api/v2/products").or(GET("/api/v3/products"))
+                        .and(accepts(MediaType.APPLICATION_NDJSON)), productHandler::stream)
+                .andRoute(GET("/api/v2/products").or(GET("/api/v3/products"))
+                        .and(accepts(MediaType.TEXT_EVENT_STREAM)), productHandler::events)
+                .andRoute(GET("/api/v2/products").or(GET("/api/v3/products")), productHandler::list)
+                .andRoute(GET("/api/v2/products/search"), productHandler::search)
+                .andRoute(GET("/api/v2/products/changes"), productHandler::changes)
+                .andRoute(GET("/api/v2/products/replay"), productHandler::replay)
+                .andRoute(GET("/api/v2/products/cache/stats"), productHandler::cacheStats)
+                .andRoute(GET("/api/v2/products/admin/query-plans"), productHandler::queryPlans)
+                .andRoute(GET("/api/v2/products/pictures/{picture}"), productHandler::picture)
                 .andRoute(GET("/api/v2/products/{id}"), productHandler::view)
                 .andRoute(RequestPredicates.POST("/api/v2/products"), productHandler::create)
+                .andRoute(RequestPredicates.POST("/api/v2/products/bulk"), productHandler::bulkSave)
+                .andRoute(RequestPredicates.POST("/api/v2/products/bulk/delete"), productHandler::bulkDelete)
                 .andRoute(RequestPredicates.PUT("/api/v2/products/{id}"), productHandler::edit)
+                .andRoute(RequestPredicates.PATCH("/api/v2/products/{id}"), productHandler::patch)
                 .andRoute(RequestPredicates.DELETE("/api/v2/products/{id}"), productHandler::delete)
                 .andRoute(RequestPredicates.POST("/api/v2/products/upload/{id}"), productHandler::upload)
-                .andRoute(RequestPredicates.POST("/api/v2/products/create"), productHandler::createWithPicture);
+                .andRoute(RequestPredicates.POST("/api/v2/products/create"), productHandler::createWithPicture)
+                .andRoute(GET("/api/v2/categories/{id}/products"), productHandler::categoryProducts)
+                .andRoute(RequestPredicates.PUT("/api/v2/categories/{id}"), productHandler::editCategory)
+                .andRoute(GET("/api/v2/catalog/export"), productHandler::exportCatalog)
+                .andRoute(RequestPredicates.POST("/api/v2/catalog/import"), productHandler::importCatalog)
+                .filter(routeMetrics);
+    }
+
+    // Anything not listed is STANDARD, a GET accepting text/event-stream or application/x-ndjson is STREAMING
+    @Bean
+    public RouteCosts routeCosts() {
+        return new RouteCosts(RouteCost.STANDARD)
+                .add("/actuator/**", RouteCost.EXEMPT)
+                .add(HttpMethod.GET, "/api/v2/products/changes", RouteCost.STREAMING)
+                .add(HttpMethod.GET, "/api/v2/products/replay", RouteCost.STREAMING)
+                .add("/api/v2/catalog/**", RouteCost.STREAMING)
+                .add(HttpMethod.GET, "/api/v2/products/search", RouteCost.STANDARD)
+                .add(HttpMethod.GET, "/api/v2/products/cache/stats", RouteCost.CHEAP)
+                .add(HttpMethod.GET, "/api/v2/products/admin/query-plans", RouteCost.EXPENSIVE)
+                .add(HttpMethod.GET, "/api/v2/products/pictures/{picture}", RouteCost.CHEAP)
+                .add(HttpMethod.GET, "/api/v2/products/{id}", RouteCost.CHEAP)
+                .add(HttpMethod.POST, "/api/v2/products/bulk", RouteCost.EXPENSIVE)
+                .add(HttpMethod.POST, "/api/v2/products/bulk/delete", RouteCost.EXPENSIVE)
+                .add(HttpMethod.POST, "/api/v2/products/upload/{id}", RouteCost.EXPENSIVE)
+                .add(HttpMethod.POST, "/api/v2/products/create", RouteCost.EXPENSIVE)
+                .add(HttpMethod.GET, "/api/products/{id}", RouteCost.CHEAP)
+                .add(HttpMethod.POST, "/api/products/upload/{id}", RouteCost.EXPENSIVE)
+                .add(HttpMethod.POST, "/api/products/v2", RouteCost.EXPENSIVE);
+    }
+
+    // RequestPredicates.accept also matches */*, streaming must be asked for explicitly
+    private static RequestPredicate accepts(MediaType mediaType) {
+        return request -> request.headers().accept().stream().anyMatch(mediaType::equalsTypeAndSubtype);
     }
 }
@@ -0,0 +1,38 @@
+package com.webflux.apirest;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorResourceFactory;
+import reactor.netty.resources.LoopResources;
+
+// Compression, h2c and the timeouts are plain server.* properties, this adds what Boot has no property for
+@Configuration
+public class ServerConfig {
+    @Value("${config.server.io-workers:0}")
+    private int ioWorkers;
+    @Value("${config.server.backlog:1024}")
+    private int backlog;
+
+    // Replaces Boot's default so the server and WebClient share event loops of a chosen size, 0 keeps
+    // Reactor's global loops with one worker per core
+    @Bean
+    public ReactorResourceFactory reactorResourceFactory() {
+        ReactorResourceFactory factory = new ReactorResourceFactory();
+        if (ioWorkers > 0) {
+            factory.setUseGlobalResources(false);
+            factory.setLoopResourcesSupplier(() -> LoopResources.create("products-http", ioWorkers, true));
+        }
+        return factory;
+    }
+
+    @Bean
+    public NettyServerCustomizer socketCustomizer() {
+        return httpServer -> httpServer
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true);
+    }
+}
@@ -1,136 +1,129 @@
 package com.webflux.apirest.controllers;
 
+import com.webflux.apirest.core.ProductOperations;
+import com.webflux.apirest.core.ProductResponse;
 import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.ApiError;
+import com.webflux.apirest.models.dto.ProductCreated;
+import com.webflux.apirest.models.dto.ProductPage;
 import com.webflux.apirest.models.services.ProductService;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.bind.support.WebExchangeBindException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import javax.validation.Valid;
-import java.io.File;
-import java.net.URI;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.List;
 
+// Adapts ProductOperations to ResponseEntity, nothing product specific is decided here
+@Timed("products.controller")
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
+    private static final String BASE_PATH = "/api/products/";
+    private static final ResponseEntity<Object> NOT_FOUND = ResponseEntity.notFound().build();
+    private static final ResponseEntity<Object> NO_CONTENT = ResponseEntity.noContent().build();
+
+    @Autowired
+    private ProductOperations productOperations;
     @Autowired
     private ProductService productService;
-    @Value("${config.uploads.path}")
-    private String filepath;
 
     @GetMapping
-    public Mono<ResponseEntity<Flux<Product>>> list() {
-        return Mono.just(
-                ResponseEntity.ok()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(productService.findAll())
-        );
+    public Mono<ResponseEntity<Object>> list(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) String sort,
+                                             @RequestParam(required = false) String order,
+                                             @RequestParam(required = false) String size,
+                                             @RequestParam(defaultValue = "false") boolean all) {
+        return productOperations.list(cursor, sort, order, size, all).map(this::render);
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Product> stream() {
+        return productService.findAll();
     }
 
     @GetMapping("/{id}")
-    public Mono<ResponseEntity<Product>> view(@PathVariable String id) {
-        return productService.findById(id).map(product -> ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(product)
-        ).defaultIfEmpty(ResponseEntity.notFound().build());
+    public Mono<ResponseEntity<Object>> view(@PathVariable String id) {
+        return productOperations.view(id).map(this::render);
     }
 
     @PostMapping
-    public Mono<ResponseEntity<Map<String, Object>>> create(@Valid @RequestBody Mono<Product> monoProduct) {
-        Map<String, Object> stringObjectMap = new HashMap<>();
-        return monoProduct.flatMap(product -> {
-            if (product.getCreateAt() == null) {
-                product.setCreateAt(new Date());
-            }
-            return productService.save(product).map(product1 -> {
-                stringObjectMap.put("product", product1);
-                stringObjectMap.put("message", "Product successfully created");
-                stringObjectMap.put("timestamp", new Date());
-                return ResponseEntity.created(
-                        URI.create("/api/products/".concat(product1.getId()))
-                ).contentType(MediaType.APPLICATION_JSON).body(stringObjectMap);
-            });
-        }).onErrorResume(throwable -> {
-            return Mono.just(throwable).cast(WebExchangeBindException.class)
-                    .flatMap(e -> Mono.just(e.getFieldErrors()))
-                    .flatMapMany(Flux::fromIterable)
-                    .map(fieldError -> "The flied ".concat(fieldError.getField()).concat(" ").concat(fieldError.getDefaultMessage()))
-                    .collectList()
-                    .flatMap(strings -> {
-                        stringObjectMap.put("errors", strings);
-                        stringObjectMap.put("timestamp", new Date());
-                        stringObjectMap.put("status", HttpStatus.BAD_REQUEST.value());
-                        return Mono.just(ResponseEntity.badRequest().body(stringObjectMap));
-                    });
-        });
+    public Mono<ResponseEntity<Object>> create(@RequestBody Mono<Product> product) {
+        return productOperations.create(product)
+                .map(response -> response.isError()
+                        ? response
+                        : response.withBody(new ProductCreated((Product) response.getBody())))
+                .map(this::render);
     }
 
     @PutMapping("/{id}")
-    public Mono<ResponseEntity<Product>> edit(@RequestBody Product product, @PathVariable String id) {
-        Mono<Product> productMono = productService.findById(id);
-        return productMono.flatMap(product1 -> {
-            product1.setName(product.getName());
-            product1.setPrice(product.getPrice());
-            product1.setCategory(product.getCategory());
-           return productService.save(product1);
-        }).map(product1 -> ResponseEntity.created(URI.create("/api/products/".concat(product1.getId())))
-                .contentType(MediaType.APPLICATION_JSON).body(product1))
-                .defaultIfEmpty(ResponseEntity.notFound().build());
+    public Mono<ResponseEntity<Object>> edit(@RequestBody Mono<Product> product, @PathVariable String id) {
+        return productOperations.edit(id, product).map(this::render);
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<Object>> patch(@RequestBody Mono<Product> changes, @PathVariable String id) {
+        return productOperations.patch(id, changes).map(this::render);
     }
 
     @DeleteMapping("/{id}")
-    public Mono<ResponseEntity<Void>> delete(@PathVariable String id) {
-        return productService.findById(id).flatMap(product -> productService.delete(product)
-                        .then(Mono.just(new ResponseEntity<Void>(HttpStatus.NO_CONTENT))))
-                .defaultIfEmpty(new ResponseEntity<Void>(HttpStatus.NOT_FOUND));
+    public Mono<ResponseEntity<Object>> delete(@PathVariable String id) {
+        return productOperations.delete(id).map(this::render);
     }
 
     @PostMapping("/upload/{id}")
-    public Mono<ResponseEntity<Product>> upload(@PathVariable String id,
-                                                @RequestPart FilePart filePart) {
-        return productService.findById(id).flatMap(product -> {
-            product.setPicture(UUID.randomUUID().toString().concat("-")
-                    .concat(filePart.filename())
-                    .replace(" ", "")
-                    .replace(":", "")
-                    .replace("\\", ""));
-            return filePart.transferTo(new File(filepath.concat(product.getPicture())))
-                    .then(productService.save(product));
-        }).map(product -> ResponseEntity.ok(product)).defaultIfEmpty(ResponseEntity.notFound().build());
+    public Mono<ResponseEntity<Object>> upload(@PathVariable String id, @RequestPart Mono<FilePart> filePart) {
+        return productOperations.upload(id, filePart).map(this::render);
     }
 
     @PostMapping("/v2")
-    public Mono<ResponseEntity<Product>> createWithPicture(Product product, @RequestPart FilePart filePart) {
-        if (product.getCreateAt() == null) {
-            product.setCreateAt(new Date());
+    public Mono<ResponseEntity<Object>> createWithPicture(Product product, @RequestPart Mono<FilePart> filePart) {
+        return productOperations.createWithPicture(Mono.just(product), filePart).map(this::render);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResponseEntity<Object> render(ProductResponse response) {
+        if (response == ProductResponse.NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        if (response == ProductResponse.NO_CONTENT) {
+            return NO_CONTENT;
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatus())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (response.isError()) {
+            return builder.body(new ApiError(response.getStatus().value(), (List<String>) response.getBody(),
+                    new Date()));
+        }
+        if (response.getLocation() != null) {
+            builder.header(HttpHeaders.LOCATION, BASE_PATH.concat(response.getLocation()));
+        }
+        if (response.getNextCursor() != null) {
+            builder.header(ProductPage.NEXT_CURSOR_HEADER, response.getNextCursor());
+        }
+        // ResponseEntityResultHandler turns a GET matching these into a 304 before the body is encoded
+        if (response.getETag() != null) {
+            builder.eTag(response.getETag());
+        }
+        if (response.getLastModified() != null) {
+            builder.lastModified(response.getLastModified().toInstant());
         }
-        product.setPicture(UUID.randomUUID().toString().concat("-")
-                .concat(filePart.filename())
-                .replace(" ", "")
-                .replace(":", "")
-                .replace("\\", ""));
-        return filePart.transferTo(new File(filepath.concat(product.getPicture())))
-                .then(productService.save(product)).map(product1 -> ResponseEntity.created(
-                URI.create("/api/products/".concat(product1.getId()))
-        ).contentType(MediaType.APPLICATION_JSON).body(product1));
+        return builder.body(response.getBody());
     }
 }
@@ -0,0 +1,178 @@
+package com.webflux.apirest.core;
+
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.ProductCursor;
+import com.webflux.apirest.models.dto.ProductPage;
+import com.webflux.apirest.models.services.PictureService;
+import com.webflux.apirest.models.services.ProductService;
+import com.webflux.apirest.models.services.ProductValidationException;
+import com.webflux.apirest.models.services.ThumbnailService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// The product operations behind both /api/products and /api/v2/products. Validation and the mapping of
+// failures to statuses live here only, the controller and the handler just render the ProductResponse
+@Component
+public class ProductOperations {
+    private static final Mono<ProductResponse> NOT_FOUND = Mono.just(ProductResponse.NOT_FOUND);
+    private static final Mono<ProductResponse> NO_CONTENT = Mono.just(ProductResponse.NO_CONTENT);
+
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private PictureService pictureService;
+    @Autowired
+    private ThumbnailService thumbnailService;
+    @Autowired
+    private Validator validator;
+
+    public Mono<ProductResponse> list(String cursor, String sort, String order, String size, boolean all) {
+        if (all) {
+            return Mono.just(ProductResponse.ok(productService.findAll()));
+        }
+        return Mono.fromCallable(() -> ProductCursor.from(cursor, sort, order))
+                .flatMap(productCursor -> productService.findPage(productCursor, size == null ? null : Integer.valueOf(size)))
+                .map(page -> ProductResponse.page(page.getProducts(), page.getNext())
+                        .withValidators(eTag(page), null))
+                .onErrorResume(this::error);
+    }
+
+    public Mono<ProductResponse> view(String id) {
+        return productService.findById(id)
+                .map(product -> ProductResponse.ok(product).withValidators(eTag(product), product.getUpdateAt()))
+                .switchIfEmpty(NOT_FOUND);
+    }
+
+    public Mono<ProductResponse> create(Mono<Product> body) {
+        return body.map(this::validated)
+                .flatMap(product -> {
+                    if (product.getCreateAt() == null) {
+                        product.setCreateAt(new Date());
+                    }
+                    return productService.save(product);
+                })
+                .map(product -> ProductResponse.created(product, product.getId()))
+                .onErrorResume(this::error);
+    }
+
+    public Mono<ProductResponse> edit(String id, Mono<Product> body) {
+        return body.map(this::validated)
+                // Not from the cache, a write it has not seen would fail the version check of a plain PUT
+                .flatMap(changes -> productService.findCurrentById(id).flatMap(product -> productService.save(
+                        product.toBuilder()
+                                .name(changes.getName())
+                                .price(changes.getPrice())
+                                .category(changes.getCategory())
+                                .build())))
+                .map(product -> ProductResponse.created(product, product.getId())
+                        .withValidators(eTag(product), product.getUpdateAt()))
+                .switchIfEmpty(NOT_FOUND)
+                .onErrorResume(this::error);
+    }
+
+    public Mono<ProductResponse> patch(String id, Mono<Product> body) {
+        return body.flatMap(changes -> productService.patch(id, changes))
+                .map(product -> ProductResponse.ok(product).withValidators(eTag(product), product.getUpdateAt()))
+                .switchIfEmpty(NOT_FOUND)
+                .onErrorResume(this::error);
+    }
+
+    public Mono<ProductResponse> delete(String id) {
+        return productService.delete(id)
+                .flatMap(deleted -> deleted ? NO_CONTENT : NOT_FOUND)
+                .onErrorResume(this::error);
+    }
+
+    public Mono<ProductResponse> upload(String id, Mono<FilePart> filePart) {
+        return filePart.switchIfEmpty(Mono.error(() -> new IllegalArgumentException("The part filePart is required")))
+                .flatMap(part -> productService.findCurrentById(id)
+                        .flatMap(product -> pictureService.store(part).flatMap(picture -> productService.save(
+                                product.toBuilder().picture(picture).thumbnails(null).build()))))
+                .doOnNext(thumbnailService::schedule)
+                .map(ProductResponse::ok)
+                .switchIfEmpty(NOT_FOUND)
+                .onErrorResume(this::error);
+    }
+
+    public Mono<ProductResponse> createWithPicture(Mono<Product> body, Mono<FilePart> filePart) {
+        return body.map(this::validated)
+                .zipWith(filePart)
+                .flatMap(request -> pictureService.store(request.getT2()).flatMap(picture -> {
+                    Product product = request.getT1();
+                    product.setPicture(picture);
+                    if (product.getCreateAt() == null) {
+                        product.setCreateAt(new Date());
+                    }
+                    return productService.save(product);
+                }))
+                .doOnNext(thumbnailService::schedule)
+                .map(product -> ProductResponse.created(product, product.getId()))
+                .switchIfEmpty(Mono.fromSupplier(() -> ProductResponse.error(HttpStatus.BAD_REQUEST,
+                        "The part filePart is required")))
+                .onErrorResume(this::error);
+    }
+
+    // The version changes on every write, so it identifies the representation without hashing it
+    private static String eTag(Product product) {
+        return product.getVersion() == null ? null : "W/\"".concat(product.getVersion().toString()).concat("\"");
+    }
+
+    // Pages have no version of their own, the ids and versions on it change with any write, insert or delete
+    // that alters the page. There is no Last-Modified, a delete would not move it forward
+    private static String eTag(ProductPage page) {
+        StringBuilder versions = new StringBuilder(page.getProducts().size() * 32);
+        for (Product product : page.getProducts()) {
+            versions.append(product.getId()).append(':').append(product.getVersion()).append(';');
+        }
+        if (page.getNext() != null) {
+            versions.append(page.getNext());
+        }
+        return "W/\"".concat(DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)))
+                .concat("\"");
+    }
+
+    // Public for the validation benchmark, every operation that takes a product goes through it
+    public Product validated(Product product) {
+        Errors errors = new BeanPropertyBindingResult(product, Product.class.getName());
+        validator.validate(product, errors);
+        if (errors.hasFieldErrors()) {
+            throw new ProductValidationException(errors.getFieldErrors().stream()
+                    .map(fieldError -> "The field ".concat(fieldError.getField()).concat(" ")
+                            .concat(fieldError.getDefaultMessage()))
+                    .collect(Collectors.toList()));
+        }
+        return product;
+    }
+
+    // The one mapping of failures to statuses, the handler routes that are not product operations use it too
+    public Mono<ProductResponse> error(Throwable throwable) {
+        if (throwable instanceof ProductValidationException) {
+            List<String> errors = ((ProductValidationException) throwable).getErrors();
+            return Mono.just(ProductResponse.error(HttpStatus.BAD_REQUEST, errors));
+        }
+        if (throwable instanceof OptimisticLockingFailureException) {
+            return Mono.just(ProductResponse.error(HttpStatus.CONFLICT, throwable.getMessage()));
+        }
+        if (throwable instanceof DataBufferLimitException) {
+            return Mono.just(ProductResponse.error(HttpStatus.PAYLOAD_TOO_LARGE, throwable.getMessage()));
+        }
+        if (throwable instanceof IllegalArgumentException) {
+            return Mono.just(ProductResponse.error(HttpStatus.BAD_REQUEST, throwable.getMessage()));
+        }
+        return Mono.error(throwable);
+    }
+}
@@ -0,0 +1,70 @@
+package com.webflux.apirest.core;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+// Outcome of a product operation independent of the route style rendering it. The bodiless outcomes are
+// shared instances, so adapters can map them to responses they built once
+@Getter
+public final class ProductResponse {
+    public static final ProductResponse NOT_FOUND = new ProductResponse(HttpStatus.NOT_FOUND, null, null, null,
+            null, null);
+    public static final ProductResponse NO_CONTENT = new ProductResponse(HttpStatus.NO_CONTENT, null, null, null,
+            null, null);
+
+    private final HttpStatus status;
+    // A value, a Flux of products or, for errors, the list of messages
+    private final Object body;
+    // Id of the product the Location header points to
+    private final String location;
+    private final String nextCursor;
+    // Validators, a GET whose If-None-Match or If-Modified-Since matches them is answered 304 without a body
+    private final String eTag;
+    private final Date lastModified;
+
+    private ProductResponse(HttpStatus status, Object body, String location, String nextCursor, String eTag,
+                            Date lastModified) {
+        this.status = status;
+        this.body = body;
+        this.location = location;
+        this.nextCursor = nextCursor;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public static ProductResponse ok(Object body) {
+        return new ProductResponse(HttpStatus.OK, body, null, null, null, null);
+    }
+
+    public static ProductResponse page(Object body, String nextCursor) {
+        return new ProductResponse(HttpStatus.OK, body, null, nextCursor, null, null);
+    }
+
+    public static ProductResponse created(Object body, String id) {
+        return new ProductResponse(HttpStatus.CREATED, body, id, null, null, null);
+    }
+
+    public static ProductResponse error(HttpStatus status, List<String> errors) {
+        return new ProductResponse(status, errors, null, null, null, null);
+    }
+
+    public static ProductResponse error(HttpStatus status, String error) {
+        return error(status, Collections.singletonList(error == null ? status.getReasonPhrase() : error));
+    }
+
+    public boolean isError() {
+        return status.isError();
+    }
+
+    public ProductResponse withBody(Object body) {
+        return new ProductResponse(status, body, location, nextCursor, eTag, lastModified);
+    }
+
+    public ProductResponse withValidators(String eTag, Date lastModified) {
+        return new ProductResponse(status, body, location, nextCursor, eTag, lastModified);
+    }
+}
@@ -1,136 +1,322 @@
 package com.webflux.apirest.handler;
 
+import com.webflux.apirest.core.ProductOperations;
+import com.webflux.apirest.core.ProductResponse;
 import com.webflux.apirest.models.documents.Category;
 import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.ArchiveFormat;
+import com.webflux.apirest.models.dto.BulkResult;
+import com.webflux.apirest.models.dto.CacheStatistics;
+import com.webflux.apirest.models.dto.ProductChange;
+import com.webflux.apirest.models.dto.ProductCursor;
+import com.webflux.apirest.models.dto.ProductPage;
+import com.webflux.apirest.models.dto.ProductSearch;
+import com.webflux.apirest.models.dto.QueryPlan;
+import com.webflux.apirest.models.services.CatalogArchiveService;
+import com.webflux.apirest.models.services.PictureService;
+import com.webflux.apirest.models.services.ProductChangeService;
 import com.webflux.apirest.models.services.ProductService;
+import com.webflux.apirest.models.services.QueryPlanService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.http.codec.multipart.FormFieldPart;
+import org.springframework.http.codec.multipart.Part;
 import org.springframework.stereotype.Component;
-import org.springframework.validation.BeanPropertyBindingResult;
-import org.springframework.validation.Errors;
-import org.springframework.validation.Validator;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.File;
 import java.net.URI;
-import java.util.Date;
-import java.util.UUID;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Component
 public class ProductHandler {
+    private static final String PICTURE_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic()
+            .getHeaderValue().concat(", immutable");
+    private static final Duration CHANGES_HEARTBEAT = Duration.ofSeconds(15);
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+    private static final String BASE_PATH = "/api/v2/products/";
+    // ServerResponse is immutable, the bodiless outcomes are built once
+    private static final Mono<ServerResponse> NOT_FOUND = ServerResponse.notFound().build().cache();
+    private static final Mono<ServerResponse> NO_CONTENT = ServerResponse.noContent().build().cache();
+
+    @Autowired
+    private ProductOperations productOperations;
     @Autowired
     private ProductService productService;
-    @Value("${config.uploads.path}")
-    private String filepath;
     @Autowired
-    private Validator validator;
+    private PictureService pictureService;
+    @Autowired
+    private QueryPlanService queryPlanService;
+    @Autowired
+    private ProductChangeService productChangeService;
+    @Autowired
+    private CatalogArchiveService catalogArchiveService;
     public Mono<ServerResponse> list(ServerRequest serverRequest) {
-        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+        return productOperations.list(serverRequest.queryParam("cursor").orElse(null),
+                        serverRequest.queryParam("sort").orElse(null),
+                        serverRequest.queryParam("order").orElse(null),
+                        serverRequest.queryParam("size").orElse(null),
+                        serverRequest.queryParam("all").map(Boolean::parseBoolean).orElse(false))
+                .flatMap(this::render);
+    }
+
+    public Mono<ServerResponse> search(ServerRequest serverRequest) {
+        return Mono.fromCallable(() -> ProductSearch.from(serverRequest.queryParam("category").orElse(null),
+                        serverRequest.queryParam("minPrice").orElse(null),
+                        serverRequest.queryParam("maxPrice").orElse(null),
+                        serverRequest.queryParam("name").orElse(null),
+                        serverRequest.queryParam("from").orElse(null),
+                        serverRequest.queryParam("to").orElse(null),
+                        serverRequest.queryParam("fields").orElse(null),
+                        serverRequest.queryParam("size").orElse(null)))
+                .flatMap(productService::search)
+                .map(ProductResponse::ok)
+                .onErrorResume(productOperations::error)
+                .flatMap(this::render);
+    }
+
+    public Mono<ServerResponse> stream(ServerRequest serverRequest) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
                 .body(productService.findAll(), Product.class);
     }
 
+    // Synthetic load: the catalog with upper case names, replayed repeat times as NDJSON
+    public Mono<ServerResponse> replay(ServerRequest serverRequest) {
+        return streamed(Flux.defer(() -> productService.findAllWithUpperCaseNameAndRepeat(
+                        serverRequest.queryParam("repeat").map(Integer::valueOf).orElse(null))),
+                products -> ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                        .body(products, Product.class));
+    }
+
+    public Mono<ServerResponse> events(ServerRequest serverRequest) {
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(productService.findAll()
+                        .map(product -> ServerSentEvent.builder(product)
+                                .id(product.getId())
+                                .event("product")
+                                .build())));
+    }
+
+    public Mono<ServerResponse> changes(ServerRequest serverRequest) {
+        // Browsers reconnecting an EventSource send the last id back, which is the resume token
+        String resumeToken = serverRequest.queryParam("resumeAfter")
+                .orElse(serverRequest.headers().firstHeader("Last-Event-ID"));
+        if (resumeToken != null && !ProductChange.isResumeToken(resumeToken)) {
+            return render(ProductResponse.error(HttpStatus.BAD_REQUEST, "Invalid resume token ".concat(resumeToken)));
+        }
+        Flux<ServerSentEvent<ProductChange>> changes = productChangeService.changes(resumeToken)
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(change.getToken())
+                        .event(change.getCollection().concat(".").concat(change.getOperation()))
+                        .build());
+        // Idle proxies close silent connections, a comment keeps them open without waking clients
+        Flux<ServerSentEvent<ProductChange>> heartbeats = Flux.interval(CHANGES_HEARTBEAT)
+                .map(tick -> ServerSentEvent.<ProductChange>builder().comment("heartbeat").build());
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(Flux.merge(changes, heartbeats)));
+    }
+
+    public Mono<ServerResponse> cacheStats(ServerRequest serverRequest) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(productService.cacheStatistics(), CacheStatistics.class);
+    }
+
+    public Mono<ServerResponse> queryPlans(ServerRequest serverRequest) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(queryPlanService.explainFinders(), QueryPlan.class);
+    }
+
     public Mono<ServerResponse> view(ServerRequest serverRequest) {
-        return productService.findById(serverRequest.pathVariable("id"))
-                .flatMap(product -> ServerResponse.ok()
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(BodyInserters.fromValue(product)))
-                        .switchIfEmpty(ServerResponse.notFound().build());
+        return productOperations.view(serverRequest.pathVariable("id")).flatMap(this::render);
     }
 
     public Mono<ServerResponse> create(ServerRequest serverRequest) {
-        Mono<Product> productMono = serverRequest.bodyToMono(Product.class);
-        return  productMono.flatMap(product -> {
-            Errors errors = new BeanPropertyBindingResult(product, Product.class.getName());
-            validator.validate(product, errors);
-            if (errors.hasErrors()) {
-                return Flux.fromIterable(errors.getFieldErrors())
-                        .map(fieldError -> "The field ".concat(fieldError.getField()).concat(" ")
-                                .concat(fieldError.getDefaultMessage())).collectList()
-                        .flatMap(strings -> ServerResponse.badRequest().body(BodyInserters.fromValue(strings)));
-            } else {
-                if (product.getCreateAt() == null) {
-                    product.setCreateAt(new Date());
-                }
-                return productService.save(product).
-                        flatMap(productDb -> ServerResponse.created(URI.create("/api/v2/products/".concat(productDb.getId())))
-                                .contentType(MediaType.APPLICATION_JSON)
-                                .body(BodyInserters.fromValue(productDb)));
-            }
-        });
+        return productOperations.create(serverRequest.bodyToMono(Product.class)).flatMap(this::render);
+    }
+
+    public Mono<ServerResponse> bulkSave(ServerRequest serverRequest) {
+        return bulkResponse(serverRequest, productService.saveAll(serverRequest.bodyToFlux(Product.class)));
+    }
+
+    public Mono<ServerResponse> bulkDelete(ServerRequest serverRequest) {
+        // A Flux cannot carry null, an item without an id goes through as empty and is reported INVALID
+        return bulkResponse(serverRequest, productService.deleteAll(serverRequest.bodyToFlux(Product.class)
+                .map(product -> product.getId() == null ? "" : product.getId())));
+    }
+
+    private Mono<ServerResponse> bulkResponse(ServerRequest serverRequest, Flux<BulkResult> results) {
+        MediaType mediaType = serverRequest.headers().contentType()
+                .filter(MediaType.APPLICATION_NDJSON::isCompatibleWith)
+                .orElse(MediaType.APPLICATION_JSON);
+        return ServerResponse.ok().contentType(mediaType).body(results, BulkResult.class);
+    }
+
+    public Mono<ServerResponse> exportCatalog(ServerRequest serverRequest) {
+        String collection = serverRequest.queryParam("collection").orElse("products");
+        DataBufferFactory bufferFactory = serverRequest.exchange().getResponse().bufferFactory();
+        return Mono.fromCallable(() -> ArchiveFormat.from(serverRequest.queryParam("format").orElse(null)))
+                .flatMap(format -> streamed(Flux.defer(() -> catalogArchiveService.export(collection, format)),
+                        archive -> ServerResponse.ok()
+                                .contentType(GZIP)
+                                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                        .filename(collection.concat(format.getExtension())).build().toString())
+                                .body(BodyInserters.fromDataBuffers(archive.map(bufferFactory::wrap)))))
+                .onErrorResume(this::failed);
+    }
+
+    public Mono<ServerResponse> importCatalog(ServerRequest serverRequest) {
+        return streamed(Flux.defer(() -> catalogArchiveService.importArchive(
+                        serverRequest.queryParam("collection").orElse("products"),
+                        ArchiveFormat.from(serverRequest.queryParam("format").orElse(null)),
+                        serverRequest.bodyToFlux(DataBuffer.class))),
+                results -> ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                        .body(results, BulkResult.class));
     }
 
     public Mono<ServerResponse> edit(ServerRequest serverRequest) {
-        Mono<Product> product = serverRequest.bodyToMono(Product.class);
-        String id = serverRequest.pathVariable("id");
-        Mono<Product> productDb = productService.findById(id);
+        return productOperations.edit(serverRequest.pathVariable("id"), serverRequest.bodyToMono(Product.class))
+                .flatMap(this::render);
+    }
 
-        return productDb.zipWith(product, (db, req) -> {
-            db.setName(req.getName());
-            db.setPrice(req.getPrice());
-            db.setCategory(req.getCategory());
-            return db;
-        }).flatMap(product1 -> ServerResponse.created(URI.create("/api/v2/products/".concat(product1.getId())))
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(productService.save(product1), Product.class))
-                .switchIfEmpty(ServerResponse.notFound().build());
+    public Mono<ServerResponse> patch(ServerRequest serverRequest) {
+        return productOperations.patch(serverRequest.pathVariable("id"), serverRequest.bodyToMono(Product.class))
+                .flatMap(this::render);
     }
 
-    public Mono<ServerResponse> delete(ServerRequest serverRequest) {
+    public Mono<ServerResponse> categoryProducts(ServerRequest serverRequest) {
         String id = serverRequest.pathVariable("id");
-        Mono<Product> productDb = productService.findById(id);
+        return Mono.fromCallable(() -> ProductCursor.from(serverRequest.queryParam("cursor").orElse(null),
+                        ProductCursor.SORT_ID, serverRequest.queryParam("order").orElse(null)))
+                .flatMap(cursor -> productService.findCategoryById(id)
+                        .flatMap(category -> productService.findPageByCategory(id, cursor,
+                                serverRequest.queryParam("size").map(Integer::valueOf).orElse(null))))
+                .map(page -> ProductResponse.page(page.getProducts(), page.getNext()))
+                .defaultIfEmpty(ProductResponse.NOT_FOUND)
+                .onErrorResume(productOperations::error)
+                .flatMap(this::render);
+    }
+
+    public Mono<ServerResponse> editCategory(ServerRequest serverRequest) {
+        String id = serverRequest.pathVariable("id");
+        return serverRequest.bodyToMono(Category.class)
+                .flatMap(changes -> productService.updateCategory(id, changes))
+                .map(ProductResponse::ok)
+                .defaultIfEmpty(ProductResponse.NOT_FOUND)
+                .onErrorResume(productOperations::error)
+                .flatMap(this::render);
+    }
 
-        return productDb.flatMap(product -> productService.delete(
-                product).then(ServerResponse.noContent().build()))
-                .switchIfEmpty(ServerResponse.notFound().build());
+    public Mono<ServerResponse> delete(ServerRequest serverRequest) {
+        return productOperations.delete(serverRequest.pathVariable("id")).flatMap(this::render);
     }
 
     public Mono<ServerResponse> upload(ServerRequest serverRequest) {
-        String id = serverRequest.pathVariable("id");
+        return productOperations.upload(serverRequest.pathVariable("id"), filePart(serverRequest))
+                .flatMap(this::render);
+    }
 
-        return serverRequest.multipartData().map(multipart -> multipart.toSingleValueMap().get("filePart"))
-                .cast(FilePart.class)
-                .flatMap(filePart -> productService.findById(id).flatMap(product -> {
-                    product.setPicture(UUID.randomUUID().toString().concat("-").concat(filePart.filename())
-                            .replace(" ", "")
-                            .replace(":", "")
-                            .replace("\\", ""));
-                    return filePart.transferTo(new File(filepath.concat(product.getPicture()))).then(
-                            productService.save(product));
-                })).flatMap(product -> ServerResponse.created(URI.create("/api/v2/products/".concat(product.getId())))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(BodyInserters.fromValue(product)))
-                .switchIfEmpty(ServerResponse.notFound().build());
+    public Mono<ServerResponse> picture(ServerRequest serverRequest) {
+        return pictureService.load(serverRequest.pathVariable("picture"))
+                .flatMap(picture -> {
+                    if (serverRequest.exchange().checkNotModified(picture.getEtag(), picture.getLastModified())) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                                .header(HttpHeaders.CACHE_CONTROL, PICTURE_CACHE_CONTROL)
+                                .build();
+                    }
+                    return ServerResponse.ok()
+                            .contentType(picture.getMediaType())
+                            .eTag(picture.getEtag())
+                            .lastModified(picture.getLastModified())
+                            .header(HttpHeaders.CACHE_CONTROL, PICTURE_CACHE_CONTROL)
+                            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                            .body(BodyInserters.fromResource(picture.getResource()));
+                })
+                .switchIfEmpty(NOT_FOUND);
     }
 
     public Mono<ServerResponse> createWithPicture(ServerRequest serverRequest) {
-        Mono<Product> productMono = serverRequest.multipartData().map(multipart -> {
-            FormFieldPart name = (FormFieldPart) multipart.toSingleValueMap().get("name");
-            FormFieldPart price = (FormFieldPart) multipart.toSingleValueMap().get("price");
-            FormFieldPart categoryId = (FormFieldPart) multipart.toSingleValueMap().get("category.id");
-            FormFieldPart categoryName = (FormFieldPart) multipart.toSingleValueMap().get("category.name");
-            Category category = new Category(categoryId.value(), categoryName.value());
-            return new Product(name.value(), Double.parseDouble(price.value()), category);
+        // Missing or malformed fields are left null for the validation in ProductOperations to report
+        Mono<Product> product = serverRequest.multipartData().map(multipart -> {
+            Map<String, Part> parts = multipart.toSingleValueMap();
+            String price = formField(parts, "price");
+            Product fields = new Product(formField(parts, "name"), null,
+                    new Category(formField(parts, "category.id"), formField(parts, "category.name")));
+            if (price != null) {
+                try {
+                    fields.setPrice(Double.valueOf(price));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid price ".concat(price));
+                }
+            }
+            return fields;
         });
+        return productOperations.createWithPicture(product, filePart(serverRequest)).flatMap(this::render);
+    }
+
+    private static Mono<FilePart> filePart(ServerRequest serverRequest) {
+        return serverRequest.multipartData()
+                .flatMap(multipart -> Mono.justOrEmpty(multipart.getFirst("filePart")))
+                .ofType(FilePart.class);
+    }
+
+    private static String formField(Map<String, Part> parts, String name) {
+        Part part = parts.get(name);
+        return part instanceof FormFieldPart ? ((FormFieldPart) part).value() : null;
+    }
+
+    // The status waits for the first signal, a stream failing before its first item is answered like any other
+    // failed request. Completing the response must not cancel the source, the body writer subscribes to it later
+    private <T> Mono<ServerResponse> streamed(Flux<T> body, Function<Flux<T>, Mono<ServerResponse>> response) {
+        return body.switchOnFirst((first, all) -> (first.hasError()
+                        ? failed(first.getThrowable())
+                        : response.apply(all)).flux(), false)
+                .singleOrEmpty();
+    }
+
+    private Mono<ServerResponse> failed(Throwable throwable) {
+        return productOperations.error(throwable).flatMap(this::render);
+    }
 
-        return serverRequest.multipartData().map(multipart -> multipart.toSingleValueMap().get("filePart"))
-                .cast(FilePart.class)
-                .flatMap(filePart -> productMono.flatMap(product -> {
-                    product.setPicture(UUID.randomUUID().toString().concat("-").concat(filePart.filename())
-                            .replace(" ", "")
-                            .replace(":", "")
-                            .replace("\\", ""));
-                    product.setCreateAt(new Date());
-                    return filePart.transferTo(new File(filepath.concat(product.getPicture()))).then(
-                            productService.save(product));
-                })).flatMap(product -> ServerResponse.created(URI.create("/api/v2/products/".concat(product.getId())))
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(BodyInserters.fromValue(product)));
+    @SuppressWarnings("unchecked")
+    private Mono<ServerResponse> render(ProductResponse response) {
+        if (response == ProductResponse.NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        if (response == ProductResponse.NO_CONTENT) {
+            return NO_CONTENT;
+        }
+        ServerResponse.BodyBuilder builder = ServerResponse.status(response.getStatus())
+                .contentType(MediaType.APPLICATION_JSON);
+        if (response.getLocation() != null) {
+            builder.location(URI.create(BASE_PATH.concat(response.getLocation())));
+        }
+        if (response.getNextCursor() != null) {
+            builder.header(ProductPage.NEXT_CURSOR_HEADER, response.getNextCursor());
+        }
+        // ServerResponse.writeTo turns a GET matching these into a 304 before the body is encoded
+        if (response.getETag() != null) {
+            builder.eTag(response.getETag());
+        }
+        if (response.getLastModified() != null) {
+            builder.lastModified(response.getLastModified().toInstant());
+        }
+        if (response.getBody() instanceof Flux) {
+            return builder.body(BodyInserters.fromPublisher((Flux<Product>) response.getBody(), Product.class));
+        }
+        return builder.body(BodyInserters.fromValue(response.getBody()));
     }
 }
@@ -0,0 +1,51 @@
+package com.webflux.apirest.limits;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Additive increase while responses stay under the latency threshold, multiplicative decrease once
+// they do not, so the limit settles where Mongo still answers quickly instead of where its pool is full
+class AdaptiveLimit {
+    private static final double BACKOFF = 0.9;
+
+    private final long thresholdNanos;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    AdaptiveLimit(RouteCost cost) {
+        this.thresholdNanos = cost.getLatencyThreshold().toNanos();
+        this.maxLimit = cost.getMaxLimit();
+        this.limit = cost.getInitialLimit();
+    }
+
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    synchronized void sample(long latencyNanos, boolean failed) {
+        if (failed || latencyNanos > thresholdNanos) {
+            limit = Math.max(1, limit * BACKOFF);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    double getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,120 @@
+package com.webflux.apirest.limits;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.PostConstruct;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Runs before routing, so rejected requests never reach a handler or take a Mongo connection
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class LoadSheddingFilter implements WebFilter {
+    private static final String METRIC = "products.limiter";
+
+    @Autowired
+    private RouteCosts routeCosts;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Value("${config.limits.enabled:true}")
+    private boolean enabled;
+    // Unset by default, any caller could send a new id with every request and get a fresh burst each time.
+    // Only for deployments behind a gateway that authenticates callers and sets the header itself
+    @Value("${config.limits.client-header:}")
+    private String clientHeader;
+
+    private final Map<RouteCost, AdaptiveLimit> limits = new EnumMap<>(RouteCost.class);
+    private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    @PostConstruct
+    public void init() {
+        for (RouteCost cost : RouteCost.values()) {
+            if (cost.isConcurrencyLimited()) {
+                AdaptiveLimit limit = new AdaptiveLimit(cost);
+                limits.put(cost, limit);
+                Gauge.builder(METRIC.concat(".limit"), limit, AdaptiveLimit::getLimit)
+                        .description("Adaptive concurrency limit")
+                        .tag("cost", cost.name())
+                        .register(meterRegistry);
+                Gauge.builder(METRIC.concat(".inflight"), limit, AdaptiveLimit::getInFlight)
+                        .description("Requests in flight")
+                        .tag("cost", cost.name())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        RouteCost cost = routeCosts.resolve(exchange);
+        if (cost.isRateLimited()) {
+            long waitNanos = buckets.get(cost.name().concat("|").concat(client(exchange)),
+                    key -> new TokenBucket(cost.getRate(), cost.getBurst())).tryAcquire();
+            if (waitNanos > 0) {
+                return reject(exchange, cost, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+            }
+        }
+        AdaptiveLimit limit = limits.get(cost);
+        if (limit == null) {
+            return chain.filter(exchange);
+        }
+        if (!limit.tryAcquire()) {
+            return reject(exchange, cost, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            limit.release();
+            if (signal != SignalType.CANCEL) {
+                HttpStatus status = exchange.getResponse().getStatusCode();
+                limit.sample(System.nanoTime() - start,
+                        signal == SignalType.ON_ERROR || status != null && status.is5xxServerError());
+            }
+        });
+    }
+
+    private String client(ServerWebExchange exchange) {
+        if (!clientHeader.isEmpty()) {
+            String client = exchange.getRequest().getHeaders().getFirst(clientHeader);
+            if (client != null && !client.isEmpty()) {
+                return client;
+            }
+        }
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+        return address == null ? "unknown" : address.getHostString();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, RouteCost cost, HttpStatus status, long retryAfterNanos) {
+        meterRegistry.counter(METRIC.concat(".rejected"), "cost", cost.name(), "status", String.valueOf(status.value()))
+                .increment();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999))));
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,42 @@
+package com.webflux.apirest.limits;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+// Routes are limited per cost class, so a burst of bulk uploads only exhausts the expensive pool
+// and never the one serving single product views
+@Getter
+public enum RouteCost {
+    CHEAP(100, 200, 64, 512, Duration.ofMillis(100)),
+    STANDARD(20, 50, 32, 256, Duration.ofMillis(500)),
+    EXPENSIVE(2, 5, 4, 16, Duration.ofSeconds(5)),
+    // Long lived responses are only rate limited when opened, their duration says nothing about load
+    STREAMING(1, 5, 0, 0, Duration.ZERO),
+    EXEMPT(0, 0, 0, 0, Duration.ZERO);
+
+    // Per client tokens per second and bucket size
+    private final double rate;
+    private final int burst;
+    // Adaptive concurrency starts at initialLimit and never grows past maxLimit
+    private final int initialLimit;
+    private final int maxLimit;
+    // Responses slower than this shrink the concurrency limit
+    private final Duration latencyThreshold;
+
+    RouteCost(double rate, int burst, int initialLimit, int maxLimit, Duration latencyThreshold) {
+        this.rate = rate;
+        this.burst = burst;
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    public boolean isRateLimited() {
+        return burst > 0;
+    }
+
+    public boolean isConcurrencyLimited() {
+        return maxLimit > 0;
+    }
+}
@@ -0,0 +1,57 @@
+package com.webflux.apirest.limits;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cost classes by method and path pattern, first match wins
+public class RouteCosts {
+    private final RouteCost defaultCost;
+    private final List<Entry> entries = new ArrayList<>();
+
+    public RouteCosts(RouteCost defaultCost) {
+        this.defaultCost = defaultCost;
+    }
+
+    public RouteCosts add(HttpMethod method, String pattern, RouteCost cost) {
+        entries.add(new Entry(method, PathPatternParser.defaultInstance.parse(pattern), cost));
+        return this;
+    }
+
+    public RouteCosts add(String pattern, RouteCost cost) {
+        return add(null, pattern, cost);
+    }
+
+    public RouteCost resolve(ServerWebExchange exchange) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        // Bulk writes may answer in NDJSON too, only reads are turned into streams by the Accept header
+        boolean streaming = method == HttpMethod.GET && exchange.getRequest().getHeaders().getAccept().stream()
+                .anyMatch(type -> MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(type)
+                        || MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(type));
+        PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+        for (Entry entry : entries) {
+            if ((entry.method == null || entry.method == method) && entry.pattern.matches(path)) {
+                return entry.cost == RouteCost.EXEMPT || !streaming ? entry.cost : RouteCost.STREAMING;
+            }
+        }
+        return streaming ? RouteCost.STREAMING : defaultCost;
+    }
+
+    private static class Entry {
+        private final HttpMethod method;
+        private final PathPattern pattern;
+        private final RouteCost cost;
+
+        private Entry(HttpMethod method, PathPattern pattern, RouteCost cost) {
+            this.method = method;
+            this.pattern = pattern;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.webflux.apirest.limits;
+
+class TokenBucket {
+    private final double rate;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double rate, int capacity) {
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    // Takes a token and returns 0, or returns the nanoseconds until one is available
+    synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * rate / 1_000_000_000d);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / rate * 1_000_000_000d);
+    }
+}
@@ -0,0 +1,49 @@
+package com.webflux.apirest.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+// Times each functional route up to the moment its ServerResponse is ready. Together with
+// http.server.requests, which ends after the body is written, this splits handler time from serialization.
+@Component
+public class RouteMetrics implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+    private static final String METRIC = "products.route";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public Mono<ServerResponse> filter(ServerRequest request, HandlerFunction<ServerResponse> next) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return next.handle(request)
+                    .doOnSuccess(response -> record(sample, request, response == null
+                            ? Outcome.UNKNOWN : Outcome.forStatus(response.rawStatusCode()), "None"))
+                    .doOnError(throwable -> record(sample, request, Outcome.SERVER_ERROR,
+                            throwable.getClass().getSimpleName()))
+                    .doOnCancel(() -> record(sample, request, Outcome.UNKNOWN, "Cancelled"));
+        });
+    }
+
+    private void record(Timer.Sample sample, ServerRequest request, Outcome outcome, String exception) {
+        String route = request.attribute(RouterFunctions.MATCHING_PATTERN_ATTRIBUTE)
+                .map(Object::toString)
+                .orElse("UNKNOWN");
+        sample.stop(Timer.builder(METRIC)
+                .description("Time for a functional route to produce its response")
+                .tag("route", route)
+                .tag("method", request.methodName())
+                .tag("outcome", outcome.name())
+                .tag("exception", exception)
+                .register(meterRegistry));
+    }
+}
@@ -0,0 +1,55 @@
+package com.webflux.apirest.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Service methods only assemble publishers, so the timer starts on subscription and stops on the terminal signal
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    private static final String METRIC = "products.service";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("execution(* com.webflux.apirest.models.services.*Service.*(..))")
+    public Object timed(ProceedingJoinPoint joinPoint) throws Throwable {
+        String service = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        Object result = joinPoint.proceed();
+        if (result instanceof Mono) {
+            Mono<?> mono = (Mono<?>) result;
+            return Mono.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                return mono.doFinally(signal -> record(sample, service, method, signal));
+            });
+        }
+        if (result instanceof Flux) {
+            Flux<?> flux = (Flux<?>) result;
+            return Flux.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                return flux.doFinally(signal -> record(sample, service, method, signal));
+            });
+        }
+        return result;
+    }
+
+    private void record(Timer.Sample sample, String service, String method, SignalType signal) {
+        String outcome = signal == SignalType.ON_COMPLETE ? "SUCCESS"
+                : signal == SignalType.ON_ERROR ? "ERROR" : "CANCELLED";
+        sample.stop(Timer.builder(METRIC)
+                .description("Time from subscription to termination of a service call")
+                .tag("service", service)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+}
@@ -1,9 +1,16 @@
 package com.webflux.apirest.models.documents;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -11,24 +18,39 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import java.util.Date;
+import java.util.Map;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Builder(toBuilder = true)
 @Document("products")
+@CompoundIndexes({
+        @CompoundIndex(name = "category_id", def = "{'category._id': 1, '_id': 1}"),
+        @CompoundIndex(name = "createAt_id", def = "{'createAt': 1, '_id': 1}")
+})
 public class Product {
     @Id
     private String id;
     @NotEmpty
+    @Indexed
+    @With
     private String name;
     @NotNull
+    @Indexed
     private Double price;
     @DateTimeFormat(pattern = "yyyy-MM-dd")
     private Date createAt;
+    // Set by auditing on save, partial updates and bulk writes set it themselves
+    @LastModifiedDate
+    private Date updateAt;
     @Valid
     @NotNull
     private Category category;
     private String picture;
+    private Map<String, String> thumbnails;
+    @Version
+    private Long version;
 
     public Product(String name, Double price) {
         this.name = name;
@@ -0,0 +1,18 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+import java.util.List;
+
+// Error body of the /api/products routes, /api/v2 answers with the bare list of messages
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApiError {
+    private int status;
+    private List<String> errors;
+    private Date timestamp;
+}
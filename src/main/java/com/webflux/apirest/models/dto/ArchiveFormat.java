@@ -0,0 +1,21 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.Getter;
+
+@Getter
+public enum ArchiveFormat {
+    // One relaxed extended JSON document per line, ObjectIds and dates survive the round trip
+    NDJSON(".ndjson.gz"),
+    // Concatenated BSON documents, the layout mongodump writes
+    BSON(".bson.gz");
+
+    private final String extension;
+
+    ArchiveFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public static ArchiveFormat from(String format) {
+        return format == null ? NDJSON : valueOf(format.toUpperCase());
+    }
+}
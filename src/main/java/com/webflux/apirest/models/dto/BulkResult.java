@@ -0,0 +1,26 @@
+package com.webflux.apirest.models.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One line per item of a bulk stream, errors only appear on the INVALID and FAILED ones
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkResult {
+    public enum Status { CREATED, UPDATED, DELETED, NOT_FOUND, INVALID, FAILED }
+
+    private long index;
+    private String id;
+    private Status status;
+    private List<String> errors;
+
+    public BulkResult(long index, String id, Status status) {
+        this(index, id, status, null);
+    }
+}
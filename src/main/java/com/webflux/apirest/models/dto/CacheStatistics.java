@@ -0,0 +1,24 @@
+package com.webflux.apirest.models.dto;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CacheStatistics {
+    private String name;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long loadFailureCount;
+
+    public static CacheStatistics of(String name, AsyncCache<?, ?> cache) {
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatistics(name, cache.synchronous().estimatedSize(), stats.hitCount(),
+                stats.missCount(), stats.hitRate(), stats.evictionCount(), stats.loadFailureCount());
+    }
+}
@@ -0,0 +1,14 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CategoryFacet {
+    private String id;
+    private String name;
+    private long count;
+}
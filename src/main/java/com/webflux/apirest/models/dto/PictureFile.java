@@ -0,0 +1,17 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class PictureFile {
+    private Resource resource;
+    private MediaType mediaType;
+    private String etag;
+    private Instant lastModified;
+}
@@ -0,0 +1,25 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.regex.Pattern;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductChange {
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]+");
+
+    private String token;
+    private String collection;
+    private String operation;
+    private String id;
+    // The current Product or Category, null for deletes
+    private Object document;
+
+    public static boolean isResumeToken(String token) {
+        return token != null && RESUME_TOKEN.matcher(token).matches();
+    }
+}
@@ -0,0 +1,24 @@
+package com.webflux.apirest.models.dto;
+
+import com.webflux.apirest.models.documents.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+// Body of POST /api/products, the shape the map it replaces used to serialize to
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductCreated {
+    public static final String MESSAGE = "Product successfully created";
+
+    private Product product;
+    private String message;
+    private Date timestamp;
+
+    public ProductCreated(Product product) {
+        this(product, MESSAGE, new Date());
+    }
+}
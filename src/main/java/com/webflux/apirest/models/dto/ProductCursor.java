@@ -0,0 +1,78 @@
+package com.webflux.apirest.models.dto;
+
+import com.webflux.apirest.models.documents.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+public class ProductCursor {
+    public static final String SORT_ID = "id";
+    public static final String SORT_CREATE_AT = "createAt";
+
+    private String sort;
+    private Sort.Direction direction;
+    private String lastId;
+    private Date lastCreateAt;
+
+    public static ProductCursor from(String token, String sort, String order) {
+        if (token != null && !token.isEmpty()) {
+            return decode(token);
+        }
+        return first(sort == null ? SORT_ID : sort,
+                order == null ? Sort.Direction.ASC : Sort.Direction.fromString(order));
+    }
+
+    public static ProductCursor first(String sort, Sort.Direction direction) {
+        if (!SORT_ID.equals(sort) && !SORT_CREATE_AT.equals(sort)) {
+            throw new IllegalArgumentException("Unsupported sort ".concat(sort));
+        }
+        return new ProductCursor(sort, direction, null, null);
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                    .split("\\|", -1);
+            if (parts.length != 4 || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            ProductCursor cursor = first(parts[0], Sort.Direction.fromString(parts[1]));
+            cursor.setLastId(parts[2]);
+            cursor.setLastCreateAt(parts[3].isEmpty() ? null : new Date(Long.parseLong(parts[3])));
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor ".concat(token), e);
+        }
+    }
+
+    public String encode() {
+        String raw = sort.concat("|").concat(direction.name()).concat("|").concat(lastId).concat("|")
+                .concat(lastCreateAt == null ? "" : String.valueOf(lastCreateAt.getTime()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ProductCursor next(Product last) {
+        return new ProductCursor(sort, direction, last.getId(), last.getCreateAt());
+    }
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public boolean isAscending() {
+        return direction.isAscending();
+    }
+
+    public Sort toSort() {
+        if (SORT_CREATE_AT.equals(sort)) {
+            return Sort.by(direction, "createAt").and(Sort.by(direction, "id"));
+        }
+        return Sort.by(direction, "id");
+    }
+}
@@ -0,0 +1,16 @@
+package com.webflux.apirest.models.dto;
+
+import com.webflux.apirest.models.documents.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductPage {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private List<Product> products;
+    private String next;
+}
@@ -0,0 +1,73 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+@AllArgsConstructor
+public class ProductSearch {
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "id", "name", "price", "createAt", "category", "picture", "thumbnails", "version"));
+    // List views do not need the picture or the creation date
+    public static final List<String> DEFAULT_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "id", "name", "price", "category"));
+
+    private String category;
+    private Double minPrice;
+    private Double maxPrice;
+    private String namePrefix;
+    private Date from;
+    private Date to;
+    private List<String> fields;
+    private Integer size;
+
+    public static ProductSearch from(String category, String minPrice, String maxPrice, String namePrefix,
+                                     String from, String to, String fields, String size) {
+        try {
+            ProductSearch search = new ProductSearch(blankToNull(category),
+                    minPrice == null ? null : Double.valueOf(minPrice),
+                    maxPrice == null ? null : Double.valueOf(maxPrice),
+                    blankToNull(namePrefix),
+                    from == null ? null : startOfDay(LocalDate.parse(from)),
+                    // The upper date is inclusive, so the bound is the start of the following day
+                    to == null ? null : startOfDay(LocalDate.parse(to).plusDays(1)),
+                    fields == null ? DEFAULT_FIELDS : parseFields(fields),
+                    size == null ? null : Integer.valueOf(size));
+            if (search.minPrice != null && search.maxPrice != null && search.minPrice > search.maxPrice) {
+                throw new IllegalArgumentException("minPrice is greater than maxPrice");
+            }
+            return search;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date ".concat(e.getParsedString()), e);
+        }
+    }
+
+    private static List<String> parseFields(String fields) {
+        List<String> parsed = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        parsed.stream().filter(field -> !FIELDS.contains(field)).findFirst().ifPresent(field -> {
+            throw new IllegalArgumentException("Unsupported field ".concat(field));
+        });
+        return parsed.isEmpty() ? DEFAULT_FIELDS : parsed;
+    }
+
+    private static Date startOfDay(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+}
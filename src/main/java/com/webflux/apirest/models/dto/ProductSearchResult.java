@@ -0,0 +1,16 @@
+package com.webflux.apirest.models.dto;
+
+import com.webflux.apirest.models.documents.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductSearchResult {
+    private List<Product> products;
+    private List<CategoryFacet> categories;
+}
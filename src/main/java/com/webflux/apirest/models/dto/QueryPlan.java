@@ -0,0 +1,18 @@
+package com.webflux.apirest.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryPlan {
+    private String finder;
+    private String collection;
+    private List<String> stages;
+    private List<String> indexes;
+    private boolean collectionScan;
+}
@@ -1,13 +1,37 @@
 package com.webflux.apirest.models.repositories;
 
 import com.webflux.apirest.models.documents.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Date;
+
 public interface ProductRepository extends ReactiveMongoRepository<Product, String> {
     Mono<Product> findByName(String name);
 
     @Query("{ 'name': ?0 }")
     Mono<Product> getByName(String name);
+
+    Flux<Product> findAllBy(Pageable pageable);
+
+    // Range operators on _id are not converted from String, keyset bounds have to be passed as ObjectId
+    Flux<Product> findByIdGreaterThan(Object id, Pageable pageable);
+
+    Flux<Product> findByIdLessThan(Object id, Pageable pageable);
+
+    // Served by the category._id + _id index in both directions
+    Flux<Product> findByCategoryId(Object categoryId, Pageable pageable);
+
+    Flux<Product> findByCategoryIdAndIdGreaterThan(Object categoryId, Object id, Pageable pageable);
+
+    Flux<Product> findByCategoryIdAndIdLessThan(Object categoryId, Object id, Pageable pageable);
+
+    @Query("{ '$or': [ { 'createAt': { '$gt': ?0 } }, { 'createAt': ?0, '_id': { '$gt': ?1 } } ] }")
+    Flux<Product> findAfterCreateAt(Date createAt, Object id, Pageable pageable);
+
+    @Query("{ '$or': [ { 'createAt': { '$lt': ?0 } }, { 'createAt': ?0, '_id': { '$lt': ?1 } } ] }")
+    Flux<Product> findBeforeCreateAt(Date createAt, Object id, Pageable pageable);
 }
@@ -0,0 +1,11 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.dto.ArchiveFormat;
+import com.webflux.apirest.models.dto.BulkResult;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+public interface CatalogArchiveService {
+    Flux<byte[]> export(String collection, ArchiveFormat format);
+    Flux<BulkResult> importArchive(String collection, ArchiveFormat format, Flux<DataBuffer> archive);
+}
@@ -0,0 +1,243 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.ArchiveFormat;
+import com.webflux.apirest.models.dto.BulkResult;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class CatalogArchiveServiceImpl implements CatalogArchiveService {
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+    private static final DocumentCodec CODEC = new DocumentCodec();
+    // Documents compressed and flushed together, bounds what an export holds in memory
+    private static final int EXPORT_BATCH = 500;
+    private static final int FETCH_SIZE = 1000;
+    private static final int PIPE_SIZE = 256 * 1024;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private ProductService productService;
+    @Autowired
+    private MongoRouting mongoRouting;
+
+    @Override
+    public Flux<byte[]> export(String collection, ArchiveFormat format) {
+        String name = collectionName(collection);
+        // Raw documents skip entity mapping both ways, the archive keeps exactly what is stored
+        Flux<Document> documents = reactiveMongoTemplate.getCollection(name)
+                .map(mongoCollection -> mongoRouting.configure(mongoCollection, MongoOperation.EXPORT))
+                .flatMapMany(mongoCollection -> mongoCollection.find().batchSize(FETCH_SIZE));
+        return Flux.using(GzipChunks::new, gzip -> documents
+                        .map(document -> encode(document, format))
+                        .buffer(EXPORT_BATCH)
+                        .map(gzip::compress)
+                        .concatWith(Mono.fromCallable(gzip::finish)),
+                GzipChunks::close);
+    }
+
+    @Override
+    public Flux<BulkResult> importArchive(String collection, ArchiveFormat format, Flux<DataBuffer> archive) {
+        String name = collectionName(collection);
+        Flux<Document> documents = decode(archive, format);
+        Flux<BulkResult> results;
+        if (name.equals(reactiveMongoTemplate.getCollectionName(Category.class))) {
+            results = productService.saveAllCategories(documents
+                    .map(document -> reactiveMongoTemplate.getConverter().read(Category.class, document)));
+        } else {
+            // saveAll validates every product and writes in bulk chunks, ids in the archive are kept
+            results = productService.saveAll(documents
+                    .map(document -> reactiveMongoTemplate.getConverter().read(Product.class, document)));
+        }
+        // Lets the import write with its own write concern instead of the one of API bulk writes
+        return results.contextWrite(Context.of(MongoOperation.class, MongoOperation.IMPORT));
+    }
+
+    private String collectionName(String collection) {
+        String products = reactiveMongoTemplate.getCollectionName(Product.class);
+        String categories = reactiveMongoTemplate.getCollectionName(Category.class);
+        if (collection == null || products.equals(collection)) {
+            return products;
+        }
+        if (categories.equals(collection)) {
+            return categories;
+        }
+        throw new IllegalArgumentException("Unsupported collection ".concat(collection));
+    }
+
+    private static byte[] encode(Document document, ArchiveFormat format) {
+        if (format == ArchiveFormat.NDJSON) {
+            return document.toJson(JSON).concat("\n").getBytes(StandardCharsets.UTF_8);
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        CODEC.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    // Gzip has no incremental non-blocking decoder in the JDK. The body is written into a bounded pipe on
+    // one worker and inflated on another; a full pipe blocks the writer, which stops requesting buffers,
+    // so Netty stops reading the socket and memory stays constant whatever the archive size
+    private static Flux<Document> decode(Flux<DataBuffer> archive, ArchiveFormat format) {
+        return Flux.defer(() -> {
+            PipedInputStream input = new PipedInputStream(PIPE_SIZE);
+            PipedOutputStream output;
+            try {
+                output = new PipedOutputStream(input);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+            AtomicReference<Throwable> uploadError = new AtomicReference<>();
+            DataBufferUtils.write(archive.publishOn(Schedulers.boundedElastic()), output)
+                    .doOnNext(DataBufferUtils::release)
+                    .doOnError(uploadError::set)
+                    .doFinally(signal -> closeQuietly(output))
+                    .subscribe(buffer -> {
+                    }, e -> {
+                    });
+            return Flux.<Document, DocumentReader>generate(() -> new DocumentReader(format, input),
+                            (reader, sink) -> {
+                                try {
+                                    Document document = reader.next();
+                                    if (document != null) {
+                                        sink.next(document);
+                                    } else if (uploadError.get() != null) {
+                                        sink.error(uploadError.get());
+                                    } else {
+                                        sink.complete();
+                                    }
+                                } catch (IOException e) {
+                                    sink.error(e);
+                                }
+                                return reader;
+                            }, CatalogArchiveServiceImpl::closeQuietly)
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static class DocumentReader implements Closeable {
+        private final ArchiveFormat format;
+        private final InputStream input;
+        private BufferedReader lines;
+        private DataInputStream bson;
+
+        private DocumentReader(ArchiveFormat format, InputStream archive) throws IOException {
+            this.format = format;
+            this.input = new GZIPInputStream(archive, 64 * 1024);
+        }
+
+        private Document next() throws IOException {
+            if (format == ArchiveFormat.NDJSON) {
+                if (lines == null) {
+                    lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                }
+                String line;
+                do {
+                    line = lines.readLine();
+                } while (line != null && line.trim().isEmpty());
+                return line == null ? null : Document.parse(line);
+            }
+            if (bson == null) {
+                bson = new DataInputStream(input);
+            }
+            byte[] size = new byte[4];
+            int read = bson.read(size);
+            if (read <= 0) {
+                return null;
+            }
+            bson.readFully(size, read, 4 - read);
+            int length = (size[0] & 0xff) | (size[1] & 0xff) << 8 | (size[2] & 0xff) << 16 | (size[3] & 0xff) << 24;
+            if (length < 5) {
+                throw new EOFException("Corrupt BSON document length ".concat(String.valueOf(length)));
+            }
+            byte[] document = new byte[length];
+            System.arraycopy(size, 0, document, 0, 4);
+            bson.readFully(document, 4, length - 4);
+            return new RawBsonDocument(document).decode(CODEC);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    // A gzip stream that hands out what it has compressed after every batch, sync flushes keep the
+    // pieces decodable on the fly by the client
+    private static class GzipChunks implements Closeable {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final GZIPOutputStream gzip;
+
+        private GzipChunks() throws IOException {
+            gzip = new GZIPOutputStream(out, 64 * 1024, true);
+        }
+
+        private byte[] compress(List<byte[]> documents) {
+            try {
+                for (byte[] document : documents) {
+                    gzip.write(document);
+                }
+                gzip.flush();
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] finish() throws IOException {
+            gzip.finish();
+            return drain();
+        }
+
+        private byte[] drain() {
+            byte[] bytes = out.toByteArray();
+            out.reset();
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(gzip);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.webflux.apirest.models.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.mongodb.MongoException;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.ProductChange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+// Every instance watches the change stream itself, so writes made through any instance registered
+// in Eureka, or straight to Mongo, evict the local caches without instances talking to each other.
+// Change streams need a replica set, hence the opt-in through config.change-stream.enabled
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "config.change-stream.enabled", havingValue = "true")
+public class ChangeStreamCacheInvalidator {
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    @Autowired
+    private ProductChangeService productChangeService;
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    @Qualifier("productCache")
+    private AsyncCache<String, Product> productCache;
+    @Autowired
+    @Qualifier("categoryCache")
+    private AsyncCache<String, Category> categoryCache;
+    @Autowired
+    @Qualifier("categoryByNameCache")
+    private AsyncCache<String, Category> categoryByNameCache;
+
+    private volatile String lastToken;
+    private Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        String categories = reactiveMongoTemplate.getCollectionName(Category.class);
+        subscription = Flux.defer(() -> productChangeService.changes(lastToken))
+                .doOnError(e -> {
+                    // Changes may be missed until the stream is back, nothing cached can be trusted
+                    log.warn("Change stream interrupted, invalidating caches: {}", e.getMessage());
+                    invalidateAll();
+                    if (e instanceof MongoException && ((MongoException) e).getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                        lastToken = null;
+                    }
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(change -> {
+                    invalidate(change, categories);
+                    lastToken = change.getToken();
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private void invalidate(ProductChange change, String categories) {
+        if (change.getId() == null) {
+            return;
+        }
+        if (categories.equals(change.getCollection())) {
+            categoryCache.synchronous().invalidate(change.getId());
+            categoryByNameCache.synchronous().invalidateAll();
+        } else {
+            productCache.synchronous().invalidate(change.getId());
+        }
+    }
+
+    private void invalidateAll() {
+        productCache.synchronous().invalidateAll();
+        categoryCache.synchronous().invalidateAll();
+        categoryByNameCache.synchronous().invalidateAll();
+    }
+}
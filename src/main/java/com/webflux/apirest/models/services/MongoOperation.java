@@ -0,0 +1,22 @@
+package com.webflux.apirest.models.services;
+
+// Service operations that can pick their own read preference or write concern under
+// config.mongo.operations.<key>, anything not configured uses the client defaults
+public enum MongoOperation {
+    FIND_ALL("find-all"),
+    LIST("list"),
+    SEARCH("search"),
+    EXPORT("export"),
+    BULK("bulk"),
+    IMPORT("import");
+
+    private final String key;
+
+    MongoOperation(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,88 @@
+package com.webflux.apirest.models.services;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.webflux.apirest.models.repositories.ProductRepository;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+// Spring Data 3.4 has no per-query read preference, so every read preference in use gets its own template
+// and ProductRepository over the shared client and converter
+@Component
+public class MongoRouting {
+    private static final String PREFIX = "config.mongo.operations.";
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private Environment environment;
+
+    private final Map<MongoOperation, ReadPreference> readPreferences = new EnumMap<>(MongoOperation.class);
+    private final Map<MongoOperation, ReactiveMongoTemplate> templates = new EnumMap<>(MongoOperation.class);
+    private final Map<MongoOperation, ProductRepository> productRepositories = new EnumMap<>(MongoOperation.class);
+    private final Map<MongoOperation, WriteConcern> writeConcerns = new EnumMap<>(MongoOperation.class);
+
+    @PostConstruct
+    public void init() {
+        Map<ReadPreference, ReactiveMongoTemplate> byPreference = new HashMap<>();
+        for (MongoOperation operation : MongoOperation.values()) {
+            String readPreference = environment.getProperty(PREFIX + operation.getKey() + ".read-preference");
+            if (readPreference != null) {
+                ReadPreference preference = ReadPreference.valueOf(readPreference);
+                ReactiveMongoTemplate template = byPreference.computeIfAbsent(preference, this::template);
+                readPreferences.put(operation, preference);
+                templates.put(operation, template);
+                productRepositories.put(operation, new ReactiveMongoRepositoryFactory(template)
+                        .getRepository(ProductRepository.class));
+            }
+            String writeConcern = environment.getProperty(PREFIX + operation.getKey() + ".write-concern");
+            if (writeConcern != null) {
+                WriteConcern concern = WriteConcern.valueOf(writeConcern);
+                if (concern == null) {
+                    throw new IllegalArgumentException("Unknown write concern ".concat(writeConcern));
+                }
+                writeConcerns.put(operation, concern);
+            }
+        }
+    }
+
+    public ReactiveMongoTemplate template(MongoOperation operation) {
+        return templates.getOrDefault(operation, reactiveMongoTemplate);
+    }
+
+    public ProductRepository productRepository(MongoOperation operation) {
+        return productRepositories.getOrDefault(operation, productRepository);
+    }
+
+    // For the raw driver collections used by bulk writes, export and import
+    public MongoCollection<Document> configure(MongoCollection<Document> collection, MongoOperation operation) {
+        ReadPreference readPreference = readPreferences.get(operation);
+        if (readPreference != null) {
+            collection = collection.withReadPreference(readPreference);
+        }
+        WriteConcern writeConcern = writeConcerns.get(operation);
+        if (writeConcern != null) {
+            collection = collection.withWriteConcern(writeConcern);
+        }
+        return collection;
+    }
+
+    private ReactiveMongoTemplate template(ReadPreference readPreference) {
+        ReactiveMongoTemplate template = new ReactiveMongoTemplate(reactiveMongoTemplate.getMongoDatabaseFactory(),
+                reactiveMongoTemplate.getConverter());
+        template.setReadPreference(readPreference);
+        return template;
+    }
+}
@@ -0,0 +1,10 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.dto.PictureFile;
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Mono;
+
+public interface PictureService {
+    Mono<String> store(FilePart filePart);
+    Mono<PictureFile> load(String picture);
+}
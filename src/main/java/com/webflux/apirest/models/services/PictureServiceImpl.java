@@ -0,0 +1,147 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.dto.PictureFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class PictureServiceImpl implements PictureService {
+    @Value("${config.uploads.path}")
+    private String filepath;
+    @Value("${config.uploads.max-size:5MB}")
+    private DataSize maxSize;
+
+    private Path directory;
+
+    @PostConstruct
+    public void init() {
+        directory = Paths.get(filepath);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.warn("Uploads directory {} is not available: {}", directory, e.getMessage());
+        }
+    }
+
+    // Buffers are hashed and handed to the file channel one at a time, the picture never sits in heap as a whole.
+    // The stored name is the content hash, so uploading the same image twice keeps a single file on disk.
+    @Override
+    public Mono<String> store(FilePart filePart) {
+        String extension = extension(sanitize(filePart.filename()));
+        return Mono.defer(() -> {
+            Path temp = directory.resolve(".upload-".concat(UUID.randomUUID().toString()));
+            MessageDigest digest = sha256();
+            AtomicLong written = new AtomicLong();
+            Flux<DataBuffer> content = filePart.content().handle((buffer, sink) -> {
+                if (written.addAndGet(buffer.readableByteCount()) > maxSize.toBytes()) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(new DataBufferLimitException("Picture exceeds the limit of "
+                            .concat(maxSize.toString())));
+                    return;
+                }
+                digest.update(buffer.asByteBuffer());
+                sink.next(buffer);
+            });
+            return DataBufferUtils.write(content, temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                    .then(Mono.fromCallable(() -> promote(temp, hex(digest.digest()).concat(extension)))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .onErrorResume(throwable -> Mono.fromCallable(() -> Files.deleteIfExists(temp))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.error(throwable)))
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    @Override
+    public Mono<PictureFile> load(String picture) {
+        if (picture.startsWith(".") || !picture.equals(sanitize(picture))) {
+            return Mono.empty();
+        }
+        Path path = directory.resolve(picture);
+        return Mono.fromCallable(() -> {
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            FileSystemResource resource = new FileSystemResource(path);
+            return new PictureFile(resource,
+                    MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM),
+                    "\"".concat(stem(picture)).concat("\""),
+                    attributes.lastModifiedTime().toInstant());
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private String promote(Path temp, String picture) throws IOException {
+        Path target = directory.resolve(picture);
+        if (Files.exists(target)) {
+            log.debug("Picture {} already stored, discarding duplicate upload", picture);
+            Files.delete(temp);
+        } else {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return picture;
+    }
+
+    public static String sanitize(String filename) {
+        return filename.replace(" ", "")
+                .replace(":", "")
+                .replace("\\", "")
+                .replace("/", "");
+    }
+
+    public static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || dot == filename.length() - 1) {
+            return "";
+        }
+        String extension = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return extension.length() <= 10 && extension.chars().allMatch(Character::isLetterOrDigit)
+                ? ".".concat(extension) : "";
+    }
+
+    // Stored names are content hashes, which makes them strong validators on their own
+    private static String stem(String picture) {
+        int dot = picture.lastIndexOf('.');
+        return dot < 0 ? picture : picture.substring(0, dot);
+    }
+
+    private static String hex(byte[] bytes) {
+        return String.format("%0" + (bytes.length * 2) + "x", new BigInteger(1, bytes));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
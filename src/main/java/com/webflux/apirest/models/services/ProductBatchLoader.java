@@ -0,0 +1,92 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.repositories.ProductRepository;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Gathers the ids asked for within a short window, or until a batch is full, into one $in query.
+// Concurrent lookups of the same id are already coalesced by the product cache in front of this
+@Slf4j
+@Component
+public class ProductBatchLoader {
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Value("${config.id-batch.window:2ms}")
+    private Duration window;
+    @Value("${config.id-batch.max-size:100}")
+    private int maxSize;
+    @Value("${config.id-batch.timeout:5s}")
+    private Duration timeout;
+
+    private volatile FluxSink<Request> requests;
+    private Disposable subscription;
+
+    @PostConstruct
+    public void start() {
+        subscription = Flux.<Request>create(sink -> requests = sink)
+                .bufferTimeout(maxSize, window)
+                // bufferTimeout fails when a window closes without demand, which the batches in flight can use up
+                .onBackpressureBuffer()
+                .flatMap(this::loadBatch)
+                .doOnError(e -> log.warn("Id batching failed, restarting it: {}", e.getMessage()))
+                .retry()
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    public Mono<Product> load(String id) {
+        return Mono.fromFuture(() -> {
+            CompletableFuture<Product> product = new CompletableFuture<>();
+            requests.next(new Request(id, product));
+            // A request lost with a failed pipeline fails instead of hanging, the cache drops failed futures
+            return product.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private Mono<Void> loadBatch(List<Request> batch) {
+        Set<String> ids = batch.stream().map(request -> request.id).collect(Collectors.toSet());
+        return productRepository.findAllById(ids)
+                .collectMap(Product::getId, Function.identity())
+                .doOnNext(found -> complete(batch, found))
+                .doOnError(e -> batch.forEach(request -> request.product.completeExceptionally(e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static void complete(List<Request> batch, Map<String, Product> found) {
+        // Missing ids complete with null, which Mono.fromFuture turns into an empty Mono
+        batch.forEach(request -> request.product.complete(found.get(request.id)));
+    }
+
+    @AllArgsConstructor
+    private static class Request {
+        private final String id;
+        private final CompletableFuture<Product> product;
+    }
+}
@@ -0,0 +1,8 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.dto.ProductChange;
+import reactor.core.publisher.Flux;
+
+public interface ProductChangeService {
+    Flux<ProductChange> changes(String resumeToken);
+}
@@ -0,0 +1,79 @@
+package com.webflux.apirest.models.services;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.ProductChange;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveChangeStreamOperation;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+@Service
+public class ProductChangeServiceImpl implements ProductChangeService {
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    // Subscribers without a token share one change stream cursor instead of opening one each
+    private final Flux<ProductChange> live = Flux.defer(() -> listen(null)).share();
+
+    @Override
+    public Flux<ProductChange> changes(String resumeToken) {
+        if (resumeToken == null || resumeToken.isEmpty()) {
+            return live;
+        }
+        if (!ProductChange.isResumeToken(resumeToken)) {
+            return Flux.error(new IllegalArgumentException("Invalid resume token ".concat(resumeToken)));
+        }
+        return listen(new BsonDocument("_data", new BsonString(resumeToken)));
+    }
+
+    private Flux<ProductChange> listen(BsonDocument resumeToken) {
+        String products = reactiveMongoTemplate.getCollectionName(Product.class);
+        String categories = reactiveMongoTemplate.getCollectionName(Category.class);
+        // One database level stream keeps a single, totally ordered token sequence for both collections
+        Aggregation filter = Aggregation.newAggregation(Aggregation.match(
+                Criteria.where("ns.coll").in(products, categories)
+                        .and("operationType").in("insert", "update", "replace", "delete")));
+        ReactiveChangeStreamOperation.ChangeStreamWithFilterAndProjection<Document> stream = reactiveMongoTemplate.changeStream(Document.class)
+                .withOptions(options -> options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP))
+                .filter(filter);
+        return (resumeToken == null ? stream.listen() : stream.resumeAfter(resumeToken).listen())
+                .map(event -> toChange(event, products));
+    }
+
+    private ProductChange toChange(ChangeStreamEvent<Document> event, String products) {
+        ChangeStreamDocument<Document> raw = event.getRaw();
+        BsonValue id = raw.getDocumentKey() == null ? null : raw.getDocumentKey().get("_id");
+        Object document = null;
+        if (raw.getFullDocument() != null && event.getOperationType() != OperationType.DELETE) {
+            Class<?> type = products.equals(event.getCollectionName()) ? Product.class : Category.class;
+            document = reactiveMongoTemplate.getConverter().read(type, raw.getFullDocument());
+        }
+        return new ProductChange(token(event.getResumeToken()), event.getCollectionName(),
+                event.getOperationType().getValue(), id(id), document);
+    }
+
+    private static String id(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private static String token(BsonValue resumeToken) {
+        return resumeToken == null ? null : resumeToken.asDocument().getString("_data").getValue();
+    }
+}
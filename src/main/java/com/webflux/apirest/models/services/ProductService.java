@@ -2,19 +2,38 @@ package com.webflux.apirest.models.services;
 
 import com.webflux.apirest.models.documents.Category;
 import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.BulkResult;
+import com.webflux.apirest.models.dto.CacheStatistics;
+import com.webflux.apirest.models.dto.ProductCursor;
+import com.webflux.apirest.models.dto.ProductPage;
+import com.webflux.apirest.models.dto.ProductSearch;
+import com.webflux.apirest.models.dto.ProductSearchResult;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 public interface ProductService {
     Flux<Product> findAll();
+    Mono<ProductPage> findPage(ProductCursor cursor, Integer size);
+    Mono<ProductSearchResult> search(ProductSearch search);
+    Mono<ProductPage> findPageByCategory(String categoryId, ProductCursor cursor, Integer size);
     Mono<Product> findById(String id);
+    Mono<Product> findCurrentById(String id);
     Mono<Product> save(Product product);
-    Mono<Void> delete(Product product);
+    Mono<Product> patch(String id, Product changes);
+    Mono<Void> saveThumbnails(String id, String picture, Map<String, String> thumbnails);
+    Mono<Boolean> delete(String id);
+    Flux<BulkResult> saveAll(Flux<Product> products);
+    Flux<BulkResult> deleteAll(Flux<String> ids);
+    Flux<BulkResult> saveAllCategories(Flux<Category> categories);
     Flux<Product> findAllWithUpperCaseName();
     Flux<Product> findAllWithUpperCaseNameAndRepeat(Integer repeat);
     Flux<Category> findAllCategory();
     Mono<Category> findCategoryById(String id);
     Mono<Category> saveCategory(Category category);
+    Mono<Category> updateCategory(String id, Category changes);
     Mono<Product> findByName(String name);
     Mono<Category> findByCategoryName(String name);
+    Flux<CacheStatistics> cacheStatistics();
 }
@@ -1,13 +1,63 @@
 package com.webflux.apirest.models.services;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
 import com.webflux.apirest.models.documents.Category;
 import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.BulkResult;
+import com.webflux.apirest.models.dto.CacheStatistics;
+import com.webflux.apirest.models.dto.CategoryFacet;
+import com.webflux.apirest.models.dto.ProductCursor;
+import com.webflux.apirest.models.dto.ProductPage;
+import com.webflux.apirest.models.dto.ProductSearch;
+import com.webflux.apirest.models.dto.ProductSearchResult;
 import com.webflux.apirest.models.repositories.CategoryRepository;
 import com.webflux.apirest.models.repositories.ProductRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.Validator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductServiceImpl implements ProductService {
@@ -16,43 +66,450 @@ public class ProductServiceImpl implements ProductService {
     private ProductRepository productRepository;
     @Autowired
     private CategoryRepository categoryRepository;
+    @Autowired
+    private ProductBatchLoader productBatchLoader;
+    @Autowired
+    private MongoRouting mongoRouting;
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    @Qualifier("productCache")
+    private AsyncCache<String, Product> productCache;
+    @Autowired
+    @Qualifier("categoryCache")
+    private AsyncCache<String, Category> categoryCache;
+    @Autowired
+    @Qualifier("categoryByNameCache")
+    private AsyncCache<String, Category> categoryByNameCache;
+    @Value("${config.pagination.default-size:20}")
+    private int defaultPageSize;
+    @Value("${config.pagination.max-size:100}")
+    private int maxPageSize;
+    @Value("${config.bulk.chunk-size:500}")
+    private int bulkChunkSize;
+    @Value("${config.bulk.concurrency:4}")
+    private int bulkConcurrency;
+    @Value("${config.replay.max-repeat:10000}")
+    private int maxReplayRepeat;
+    @Value("${config.replay.max-products:10000}")
+    private int maxReplayProducts;
 
     @Override
     public Flux<Product> findAll() {
-        return productRepository.findAll();
+        return mongoRouting.productRepository(MongoOperation.FIND_ALL).findAll();
+    }
+
+    @Override
+    public Mono<ProductPage> findPage(ProductCursor cursor, Integer size) {
+        int limit = pageSize(size);
+        // One extra document tells us whether a next page exists without a count query
+        Pageable pageable = PageRequest.of(0, limit + 1, cursor.toSort());
+        ProductRepository productRepository = mongoRouting.productRepository(MongoOperation.LIST);
+        Flux<Product> products;
+        Object lastId = cursor.isFirst() ? null : toObjectId(cursor.getLastId());
+        if (cursor.isFirst()) {
+            products = productRepository.findAllBy(pageable);
+        } else if (ProductCursor.SORT_CREATE_AT.equals(cursor.getSort())) {
+            products = cursor.isAscending()
+                    ? productRepository.findAfterCreateAt(cursor.getLastCreateAt(), lastId, pageable)
+                    : productRepository.findBeforeCreateAt(cursor.getLastCreateAt(), lastId, pageable);
+        } else {
+            products = cursor.isAscending()
+                    ? productRepository.findByIdGreaterThan(lastId, pageable)
+                    : productRepository.findByIdLessThan(lastId, pageable);
+        }
+        return toPage(products, cursor, limit);
+    }
+
+    @Override
+    public Mono<ProductPage> findPageByCategory(String categoryId, ProductCursor cursor, Integer size) {
+        if (!ProductCursor.SORT_ID.equals(cursor.getSort())) {
+            return Mono.error(new IllegalArgumentException("Category pages are sorted by id only"));
+        }
+        int limit = pageSize(size);
+        Pageable pageable = PageRequest.of(0, limit + 1, cursor.toSort());
+        Object category = toObjectId(categoryId);
+        ProductRepository productRepository = mongoRouting.productRepository(MongoOperation.LIST);
+        Flux<Product> products;
+        if (cursor.isFirst()) {
+            products = productRepository.findByCategoryId(category, pageable);
+        } else {
+            Object lastId = toObjectId(cursor.getLastId());
+            products = cursor.isAscending()
+                    ? productRepository.findByCategoryIdAndIdGreaterThan(category, lastId, pageable)
+                    : productRepository.findByCategoryIdAndIdLessThan(category, lastId, pageable);
+        }
+        return toPage(products, cursor, limit);
+    }
+
+    private static Mono<ProductPage> toPage(Flux<Product> products, ProductCursor cursor, int limit) {
+        return products.collectList().map(list -> {
+            if (list.size() <= limit) {
+                return new ProductPage(list, null);
+            }
+            List<Product> content = new ArrayList<>(list.subList(0, limit));
+            return new ProductPage(content, cursor.next(content.get(limit - 1)).encode());
+        });
+    }
+
+    @Override
+    public Mono<ProductSearchResult> search(ProductSearch search) {
+        Query query = Query.query(searchCriteria(search, true))
+                .with(Sort.by("id"))
+                .limit(pageSize(search.getSize()));
+        query.fields().include(search.getFields().toArray(new String[0]));
+        // Facets leave the category filter out, so clients see how many matches every other category has
+        TypedAggregation<Product> facets = Aggregation.newAggregation(Product.class,
+                Aggregation.match(searchCriteria(search, false)),
+                Aggregation.group("category.id").first("category.name").as("name").count().as("count"),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "count").and(Sort.by("name"))));
+        ReactiveMongoTemplate template = mongoRouting.template(MongoOperation.SEARCH);
+        return Mono.zip(template.find(query, Product.class).collectList(),
+                        template.aggregate(facets, CategoryFacet.class).collectList())
+                .map(result -> new ProductSearchResult(result.getT1(), result.getT2()));
     }
 
     @Override
     public Mono<Product> findById(String id) {
+        return cached(productCache, id, productBatchLoader::load);
+    }
+
+    // Past the cache, for writes that start from what is stored and carry its version
+    @Override
+    public Mono<Product> findCurrentById(String id) {
         return productRepository.findById(id);
     }
 
     @Override
     public Mono<Product> save(Product product) {
-        return productRepository.save(product);
+        return productRepository.save(product)
+                .doOnSuccess(saved -> evictProduct(product.getId()))
+                .doOnError(throwable -> evictProduct(product.getId()));
+    }
+
+    @Override
+    public Mono<Product> patch(String id, Product changes) {
+        List<String> errors = validateSupplied(changes);
+        if (!errors.isEmpty()) {
+            return Mono.error(new ProductValidationException(errors));
+        }
+        Update update = new Update().inc("version", 1).currentDate("updateAt");
+        if (changes.getName() != null) {
+            update.set("name", changes.getName());
+        }
+        if (changes.getPrice() != null) {
+            update.set("price", changes.getPrice());
+        }
+        if (changes.getCreateAt() != null) {
+            update.set("createAt", changes.getCreateAt());
+        }
+        if (changes.getPicture() != null) {
+            update.set("picture", changes.getPicture());
+        }
+        Criteria criteria = Criteria.where("id").is(id);
+        if (changes.getVersion() != null) {
+            criteria = criteria.and("version").is(changes.getVersion());
+        }
+        Query query = Query.query(criteria);
+        // Products embed the stored category, not whatever name the client sent along with its id
+        Mono<Update> withCategory = changes.getCategory() == null ? Mono.just(update)
+                : categoryRepository.findById(changes.getCategory().getId())
+                .switchIfEmpty(Mono.error(() -> new ProductValidationException(Collections.singletonList(
+                        "The field category.id does not name a category"))))
+                .map(category -> update.set("category", category));
+        return withCategory
+                .flatMap(categoryUpdate -> reactiveMongoTemplate.findAndModify(query, categoryUpdate,
+                        FindAndModifyOptions.options().returnNew(true), Product.class))
+                .switchIfEmpty(Mono.defer(() -> changes.getVersion() == null ? Mono.empty()
+                        : productRepository.existsById(id).flatMap(exists -> exists
+                        ? Mono.error(new OptimisticLockingFailureException("Product ".concat(id)
+                        .concat(" is no longer at version ").concat(changes.getVersion().toString())))
+                        : Mono.empty())))
+                .doOnSuccess(patched -> evictProduct(id))
+                .doOnError(throwable -> evictProduct(id));
     }
 
     @Override
-    public Mono<Void> delete(Product product) {
-        return productRepository.delete(product);
+    public Mono<Void> saveThumbnails(String id, String picture, Map<String, String> thumbnails) {
+        // Matching on picture keeps a slow resize from attaching variants of a picture that was replaced meanwhile
+        return reactiveMongoTemplate.updateFirst(Query.query(Criteria.where("id").is(id).and("picture").is(picture)),
+                        new Update().set("thumbnails", thumbnails).inc("version", 1).currentDate("updateAt"),
+                        Product.class)
+                .doOnSuccess(result -> evictProduct(id))
+                .then();
     }
 
+    // By id only, a version read from a stale cache entry must not turn a delete into a conflict
+    @Override
+    public Mono<Boolean> delete(String id) {
+        return reactiveMongoTemplate.remove(Query.query(Criteria.where("id").is(id)), Product.class)
+                .map(result -> result.getDeletedCount() > 0)
+                .doOnSuccess(deleted -> evictProduct(id))
+                .doOnError(throwable -> evictProduct(id));
+    }
+
+    @Override
+    public Flux<BulkResult> saveAll(Flux<Product> products) {
+        return products.index()
+                .buffer(bulkChunkSize)
+                .flatMapSequential(this::writeChunk, bulkConcurrency);
+    }
+
+    @Override
+    public Flux<BulkResult> saveAllCategories(Flux<Category> categories) {
+        return categories.index()
+                .buffer(bulkChunkSize)
+                .flatMapSequential(this::writeCategoryChunk, bulkConcurrency);
+    }
+
+    @Override
+    public Flux<BulkResult> deleteAll(Flux<String> ids) {
+        return ids.index()
+                .buffer(bulkChunkSize)
+                .flatMapSequential(this::deleteChunk, bulkConcurrency);
+    }
+
+    private Flux<BulkResult> writeChunk(List<Tuple2<Long, Product>> chunk) {
+        BulkResult[] results = new BulkResult[chunk.size()];
+        List<WriteModel<Document>> writes = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        Date now = new Date();
+        for (int i = 0; i < chunk.size(); i++) {
+            long index = chunk.get(i).getT1();
+            Product product = chunk.get(i).getT2();
+            List<String> errors = validate(product);
+            if (!errors.isEmpty()) {
+                results[i] = new BulkResult(index, product.getId(), BulkResult.Status.INVALID, errors);
+                continue;
+            }
+            // Bulk writes bypass the auditing callbacks
+            product.setUpdateAt(now);
+            if (product.getId() == null) {
+                product.setId(new ObjectId().toHexString());
+                product.setVersion(0L);
+                if (product.getCreateAt() == null) {
+                    product.setCreateAt(now);
+                }
+                writes.add(new InsertOneModel<>(toDocument(product)));
+                results[i] = new BulkResult(index, product.getId(), BulkResult.Status.CREATED);
+            } else {
+                Document document = toDocument(product);
+                Object id = document.remove("_id");
+                document.remove("version");
+                Document update = new Document("$set", document).append("$inc", new Document("version", 1L));
+                // An unknown id is inserted, without a createAt it could never be paged past by createAt
+                if (product.getCreateAt() == null) {
+                    update.append("$setOnInsert", new Document("createAt", now));
+                }
+                writes.add(new UpdateOneModel<>(new Document("_id", id), update, new UpdateOptions().upsert(true)));
+                results[i] = new BulkResult(index, product.getId(), BulkResult.Status.UPDATED);
+            }
+            positions.add(i);
+        }
+        if (writes.isEmpty()) {
+            return Flux.fromArray(results);
+        }
+        return bulkWrite(Product.class, writes, positions, results)
+                .thenMany(Flux.fromArray(results))
+                .doOnNext(result -> evictProduct(result.getId()));
+    }
+
+    private Flux<BulkResult> writeCategoryChunk(List<Tuple2<Long, Category>> chunk) {
+        BulkResult[] results = new BulkResult[chunk.size()];
+        List<WriteModel<Document>> writes = new ArrayList<>(chunk.size());
+        List<Integer> positions = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            long index = chunk.get(i).getT1();
+            Category category = chunk.get(i).getT2();
+            Errors errors = new BeanPropertyBindingResult(category, Category.class.getName());
+            validator.validate(category, errors);
+            if (errors.hasFieldErrors()) {
+                results[i] = new BulkResult(index, category.getId(), BulkResult.Status.INVALID,
+                        messages(errors.getFieldErrors().stream()));
+                continue;
+            }
+            Document document = toDocument(category);
+            writes.add(new ReplaceOneModel<>(new Document("_id", document.get("_id")), document,
+                    new ReplaceOptions().upsert(true)));
+            results[i] = new BulkResult(index, category.getId(), BulkResult.Status.UPDATED);
+            positions.add(i);
+        }
+        if (writes.isEmpty()) {
+            return Flux.fromArray(results);
+        }
+        return bulkWrite(Category.class, writes, positions, results)
+                .thenMany(Flux.fromArray(results))
+                .doOnNext(result -> evictCategory(result.getId()));
+    }
+
+    // One unordered bulk write; results at the written positions are marked CREATED or FAILED from its outcome
+    private Mono<Void> bulkWrite(Class<?> type, List<WriteModel<Document>> writes, List<Integer> positions,
+                                 BulkResult[] results) {
+        return bulkCollection(type)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                // Unacknowledged writes report nothing back, the results keep what was attempted
+                .doOnNext(result -> {
+                    if (result.wasAcknowledged()) {
+                        markUpserts(result.getUpserts(), positions, results);
+                    }
+                })
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    markUpserts(e.getWriteResult().getUpserts(), positions, results);
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        BulkResult result = results[positions.get(error.getIndex())];
+                        result.setStatus(BulkResult.Status.FAILED);
+                        result.setErrors(Collections.singletonList(error.getMessage()));
+                    }
+                    return Mono.empty();
+                })
+                .onErrorResume(throwable -> {
+                    positions.forEach(position -> {
+                        results[position].setStatus(BulkResult.Status.FAILED);
+                        results[position].setErrors(Collections.singletonList(throwable.getMessage()));
+                    });
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Flux<BulkResult> deleteChunk(List<Tuple2<Long, String>> chunk) {
+        List<Object> ids = chunk.stream()
+                .map(Tuple2::getT2)
+                .filter(id -> !id.isEmpty())
+                .map(this::toObjectId)
+                .collect(Collectors.toList());
+        Document filter = new Document("_id", new Document("$in", ids));
+        Mono<Set<String>> deleted = ids.isEmpty() ? Mono.just(Collections.emptySet()) : bulkCollection(Product.class)
+                .flatMap(collection -> Flux.from(collection.find(filter).projection(new Document("_id", 1)))
+                        .map(document -> document.get("_id").toString())
+                        .collect(Collectors.toSet())
+                        .flatMap(existing -> Mono.from(collection.deleteMany(filter)).thenReturn(existing)));
+        return deleted
+                .flatMapMany(existing -> Flux.fromIterable(chunk).map(tuple -> deleteResult(tuple,
+                        existing.contains(tuple.getT2()) ? BulkResult.Status.DELETED : BulkResult.Status.NOT_FOUND,
+                        null)))
+                .onErrorResume(throwable -> Flux.fromIterable(chunk)
+                        .map(tuple -> deleteResult(tuple, BulkResult.Status.FAILED, throwable.getMessage())))
+                .doOnNext(result -> evictProduct(result.getId()));
+    }
+
+    // An item without an id never reaches the delete, whatever happened to the rest of the chunk
+    private static BulkResult deleteResult(Tuple2<Long, String> item, BulkResult.Status status, String error) {
+        if (item.getT2().isEmpty()) {
+            return new BulkResult(item.getT1(), null, BulkResult.Status.INVALID,
+                    Collections.singletonList("The field id must not be empty"));
+        }
+        return new BulkResult(item.getT1(), item.getT2(), status,
+                error == null ? null : Collections.singletonList(error));
+    }
+
+    // Callers such as the catalog import put their own MongoOperation in the context, the rest are BULK
+    private Mono<MongoCollection<Document>> bulkCollection(Class<?> type) {
+        return Mono.deferContextual(context -> reactiveMongoTemplate
+                .getCollection(reactiveMongoTemplate.getCollectionName(type))
+                .map(collection -> mongoRouting.configure(collection,
+                        context.getOrDefault(MongoOperation.class, MongoOperation.BULK))));
+    }
+
+    private void markUpserts(List<BulkWriteUpsert> upserts, List<Integer> positions, BulkResult[] results) {
+        upserts.forEach(upsert -> results[positions.get(upsert.getIndex())].setStatus(BulkResult.Status.CREATED));
+    }
+
+    private List<String> validate(Product product) {
+        Errors errors = new BeanPropertyBindingResult(product, Product.class.getName());
+        validator.validate(product, errors);
+        return messages(errors.getFieldErrors().stream());
+    }
+
+    // A partial update only has to be valid for the properties it actually carries
+    private List<String> validateSupplied(Product changes) {
+        Errors errors = new BeanPropertyBindingResult(changes, Product.class.getName());
+        validator.validate(changes, errors);
+        return messages(errors.getFieldErrors().stream()
+                .filter(fieldError -> errors.getFieldValue(fieldError.getField().split("\\.")[0]) != null));
+    }
+
+    private List<String> messages(Stream<FieldError> fieldErrors) {
+        return fieldErrors
+                .map(fieldError -> "The field ".concat(fieldError.getField()).concat(" ")
+                        .concat(fieldError.getDefaultMessage()))
+                .collect(Collectors.toList());
+    }
+
+    private Document toDocument(Object entity) {
+        Document document = new Document();
+        reactiveMongoTemplate.getConverter().write(entity, document);
+        return document;
+    }
+
+    private int pageSize(Integer size) {
+        return size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+    }
+
+    private Criteria searchCriteria(ProductSearch search, boolean withCategory) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (withCategory && search.getCategory() != null) {
+            criteria.add(Criteria.where("category.id").is(toObjectId(search.getCategory())));
+        }
+        if (search.getMinPrice() != null || search.getMaxPrice() != null) {
+            Criteria price = Criteria.where("price");
+            if (search.getMinPrice() != null) {
+                price.gte(search.getMinPrice());
+            }
+            if (search.getMaxPrice() != null) {
+                price.lte(search.getMaxPrice());
+            }
+            criteria.add(price);
+        }
+        if (search.getNamePrefix() != null) {
+            // An anchored literal prefix is answered from the name index bounds
+            criteria.add(Criteria.where("name").regex("^".concat(escapeRegex(search.getNamePrefix()))));
+        }
+        if (search.getFrom() != null || search.getTo() != null) {
+            Criteria createAt = Criteria.where("createAt");
+            if (search.getFrom() != null) {
+                createAt.gte(search.getFrom());
+            }
+            if (search.getTo() != null) {
+                createAt.lt(search.getTo());
+            }
+            criteria.add(createAt);
+        }
+        return criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria);
+    }
+
+    private static String escapeRegex(String value) {
+        return value.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
+    private Object toObjectId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    // Copies, the documents behind the scan may be shared with other subscribers
     @Override
     public Flux<Product> findAllWithUpperCaseName() {
-        return productRepository.findAll()
-                .map(product -> {
-                    product.setName(product.getName().toUpperCase());
-                    return product;
-                });
+        return findAll()
+                .map(product -> product.withName(product.getName().toUpperCase()));
     }
 
+    // The catalog is read once and replayed from memory, each pass is only emitted as far as demand allows.
+    // A catalog past config.replay.max-products is refused rather than replayed in part
     @Override
     public Flux<Product> findAllWithUpperCaseNameAndRepeat(Integer repeat) {
-        return productRepository.findAll()
-                .map(product -> {
-                    product.setName(product.getName().toUpperCase());
-                    return product;
-                }).repeat(5000);
+        int passes = repeat == null ? 1 : repeat;
+        if (passes < 1 || passes > maxReplayRepeat) {
+            return Flux.error(new IllegalArgumentException("repeat must be between 1 and " + maxReplayRepeat));
+        }
+        return findAllWithUpperCaseName()
+                .take(maxReplayProducts + 1L)
+                .collectList()
+                .flatMapMany(products -> products.size() > maxReplayProducts
+                        ? Flux.error(new IllegalStateException("The catalog has more than " + maxReplayProducts
+                        + " products, raise config.replay.max-products to replay it"))
+                        : Flux.range(0, passes).concatMapIterable(pass -> products));
     }
 
     @Override
@@ -62,12 +519,47 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public Mono<Category> findCategoryById(String id) {
-        return categoryRepository.findById(id);
+        return cached(categoryCache, id, categoryRepository::findById);
     }
 
     @Override
     public Mono<Category> saveCategory(Category category) {
-        return categoryRepository.save(category);
+        Mono<Category> saved = categoryRepository.save(category);
+        if (category.getId() != null) {
+            // Saving over an existing category may rename it
+            saved = saved.flatMap(updated -> propagateCategory(updated).thenReturn(updated));
+        }
+        return saved
+                .doOnSuccess(updated -> evictCategory(category.getId()))
+                .doOnError(throwable -> evictCategory(category.getId()));
+    }
+
+    @Override
+    public Mono<Category> updateCategory(String id, Category changes) {
+        if (changes.getName() == null || changes.getName().trim().isEmpty()) {
+            return Mono.error(new ProductValidationException(
+                    Collections.singletonList("The field name must not be empty")));
+        }
+        return reactiveMongoTemplate.findAndModify(Query.query(Criteria.where("id").is(id)),
+                        new Update().set("name", changes.getName()),
+                        FindAndModifyOptions.options().returnNew(true), Category.class)
+                .flatMap(updated -> propagateCategory(updated).thenReturn(updated))
+                .doOnSuccess(updated -> evictCategory(id))
+                .doOnError(throwable -> evictCategory(id));
+    }
+
+    // Products embed a copy of their category, one multi update on the indexed category._id keeps them in step
+    private Mono<Long> propagateCategory(Category category) {
+        return reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("category.id")
+                                .is(toObjectId(category.getId())).and("category.name").ne(category.getName())),
+                        new Update().set("category.name", category.getName()).inc("version", 1)
+                                .currentDate("updateAt"), Product.class)
+                .map(UpdateResult::getModifiedCount)
+                .doOnSuccess(modified -> {
+                    if (modified != null && modified > 0) {
+                        productCache.synchronous().invalidateAll();
+                    }
+                });
     }
 
     @Override
@@ -78,6 +570,32 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     public Mono<Category> findByCategoryName(String name) {
-        return categoryRepository.findByName(name);
+        return cached(categoryByNameCache, name, categoryRepository::findByName);
+    }
+
+    @Override
+    public Flux<CacheStatistics> cacheStatistics() {
+        return Flux.just(CacheStatistics.of("products", productCache),
+                CacheStatistics.of("categories", categoryCache),
+                CacheStatistics.of("categoriesByName", categoryByNameCache));
+    }
+
+    // Concurrent misses for the same key share one pending future, so they cost a single query.
+    // The copy keeps one cancelled subscriber from cancelling the load for everybody else.
+    private <V> Mono<V> cached(AsyncCache<String, V> cache, String key, Function<String, Mono<V>> loader) {
+        return Mono.fromFuture(() -> cache.get(key, (k, executor) -> loader.apply(k).toFuture()).copy());
+    }
+
+    private void evictProduct(String id) {
+        if (id != null) {
+            productCache.synchronous().invalidate(id);
+        }
+    }
+
+    private void evictCategory(String id) {
+        if (id != null) {
+            categoryCache.synchronous().invalidate(id);
+        }
+        categoryByNameCache.synchronous().invalidateAll();
     }
 }
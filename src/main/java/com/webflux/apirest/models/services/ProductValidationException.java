@@ -0,0 +1,15 @@
+package com.webflux.apirest.models.services;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class ProductValidationException extends RuntimeException {
+    private final List<String> errors;
+
+    public ProductValidationException(List<String> errors) {
+        super(String.join(", ", errors));
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,10 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.dto.QueryPlan;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface QueryPlanService {
+    Mono<Void> ensureIndexes();
+    Flux<QueryPlan> explainFinders();
+}
@@ -0,0 +1,104 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.documents.Category;
+import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.QueryPlan;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+@Service
+public class QueryPlanServiceImpl implements QueryPlanService {
+    private static final String EMBEDDED_CATEGORY_NAME_INDEX = "category.name";
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+    @Autowired
+    private MongoMappingContext mongoMappingContext;
+
+    @Override
+    public Mono<Void> ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(mongoMappingContext);
+        return Flux.fromIterable(resolver.resolveIndexFor(Product.class))
+                .concatMap(index -> reactiveMongoTemplate.indexOps(Product.class).ensureIndex(index))
+                // Annotations on Category would be resolved for the category embedded in every product as well,
+                // so its index is declared here and the category.name one older versions left on products is dropped
+                .thenMany(reactiveMongoTemplate.indexOps(Category.class)
+                        .ensureIndex(new Index("name", Sort.Direction.ASC).named("name")))
+                .thenMany(reactiveMongoTemplate.indexOps(Product.class).getIndexInfo())
+                .filter(index -> index.getName().equals(EMBEDDED_CATEGORY_NAME_INDEX))
+                .concatMap(index -> reactiveMongoTemplate.indexOps(Product.class).dropIndex(index.getName()))
+                .then();
+    }
+
+    @Override
+    public Flux<QueryPlan> explainFinders() {
+        String products = reactiveMongoTemplate.getCollectionName(Product.class);
+        String categories = reactiveMongoTemplate.getCollectionName(Category.class);
+        ObjectId id = new ObjectId();
+        Date createAt = new Date();
+        // Filters mirror what the repository finders send once mapped, including ObjectId keyset bounds
+        return Flux.concat(
+                explain("ProductRepository.findByName", products, new Document("name", "TV"), null),
+                explain("ProductRepository.getByName", products, new Document("name", "TV"), null),
+                explain("ProductRepository.findByIdGreaterThan", products,
+                        new Document("_id", new Document("$gt", id)), new Document("_id", 1)),
+                explain("ProductRepository.findAfterCreateAt", products,
+                        new Document("$or", Arrays.asList(
+                                new Document("createAt", new Document("$gt", createAt)),
+                                new Document("createAt", createAt).append("_id", new Document("$gt", id)))),
+                        new Document("createAt", 1).append("_id", 1)),
+                explain("ProductRepository.findByCategoryIdAndIdGreaterThan", products,
+                        new Document("category._id", id).append("_id", new Document("$gt", id)),
+                        new Document("_id", 1)),
+                explain("products by price", products,
+                        new Document("price", new Document("$gte", 0.0).append("$lte", 100.0)), null),
+                explain("CategoryRepository.findByName", categories, new Document("name", "Electronic"), null));
+    }
+
+    private Mono<QueryPlan> explain(String finder, String collection, Document filter, Document sort) {
+        Document find = new Document("find", collection).append("filter", filter);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        return reactiveMongoTemplate.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .map(result -> {
+                    Document winningPlan = result.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+                    // Servers running the slot based engine nest the classic tree under queryPlan
+                    if (winningPlan.containsKey("queryPlan")) {
+                        winningPlan = winningPlan.get("queryPlan", Document.class);
+                    }
+                    List<String> stages = new ArrayList<>();
+                    List<String> indexes = new ArrayList<>();
+                    collectStages(winningPlan, stages, indexes);
+                    return new QueryPlan(finder, collection, stages, indexes,
+                            stages.contains("COLLSCAN"));
+                });
+    }
+
+    private static void collectStages(Document stage, List<String> stages, List<String> indexes) {
+        stages.add(stage.getString("stage"));
+        if (stage.containsKey("indexName")) {
+            indexes.add(stage.getString("indexName"));
+        }
+        if (stage.containsKey("inputStage")) {
+            collectStages(stage.get("inputStage", Document.class), stages, indexes);
+        }
+        if (stage.containsKey("inputStages")) {
+            stage.getList("inputStages", Document.class).forEach(input -> collectStages(input, stages, indexes));
+        }
+    }
+}
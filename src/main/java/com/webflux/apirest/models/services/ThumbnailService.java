@@ -0,0 +1,7 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.documents.Product;
+
+public interface ThumbnailService {
+    void schedule(Product product);
+}
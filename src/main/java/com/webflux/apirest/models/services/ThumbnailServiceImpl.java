@@ -0,0 +1,121 @@
+package com.webflux.apirest.models.services;
+
+import com.webflux.apirest.models.documents.Product;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+@Slf4j
+@Service
+public class ThumbnailServiceImpl implements ThumbnailService {
+    @Autowired
+    private ProductService productService;
+    @Value("${config.uploads.path}")
+    private String filepath;
+    @Value("${config.thumbnails.widths:160,320,640}")
+    private List<Integer> widths;
+    @Value("${config.thumbnails.threads:2}")
+    private int threads;
+    @Value("${config.thumbnails.queue-size:100}")
+    private int queueSize;
+
+    private Path directory;
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        directory = Paths.get(filepath);
+        scheduler = Schedulers.newBoundedElastic(threads, queueSize, "thumbnails");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    // Decoding and scaling are CPU heavy and ImageIO blocks, so the work stays on its own small pool.
+    // When the queue is full the resize is skipped and clients keep using the original picture.
+    @Override
+    public void schedule(Product product) {
+        String picture = product.getPicture();
+        if (picture == null) {
+            return;
+        }
+        Mono.fromCallable(() -> resize(picture))
+                .subscribeOn(scheduler)
+                .filter(thumbnails -> !thumbnails.isEmpty())
+                .flatMap(thumbnails -> productService.saveThumbnails(product.getId(), picture, thumbnails))
+                .subscribe(unused -> {
+                }, throwable -> log.warn("Thumbnails for {} failed: {}", picture, throwable.getMessage()));
+    }
+
+    private Map<String, String> resize(String picture) throws IOException {
+        int dot = picture.lastIndexOf('.');
+        String format = dot < 0 ? "" : picture.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (!ImageIO.getImageWritersBySuffix(format).hasNext()) {
+            return Collections.emptyMap();
+        }
+        BufferedImage image = ImageIO.read(directory.resolve(picture).toFile());
+        if (image == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> thumbnails = new LinkedHashMap<>();
+        for (Integer width : widths) {
+            if (width >= image.getWidth()) {
+                continue;
+            }
+            String thumbnail = picture.substring(0, dot).concat("-").concat(width.toString()).concat(".")
+                    .concat(format);
+            Path target = directory.resolve(thumbnail);
+            if (!Files.exists(target)) {
+                write(scale(image, width, format), format, target);
+            }
+            thumbnails.put(width.toString(), thumbnail);
+        }
+        return thumbnails;
+    }
+
+    private BufferedImage scale(BufferedImage image, int width, String format) {
+        int height = Math.max(1, Math.round((float) image.getHeight() * width / image.getWidth()));
+        boolean opaque = "jpg".equals(format) || "jpeg".equals(format) || "bmp".equals(format);
+        BufferedImage scaled = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Path temp = directory.resolve(".thumbnail-".concat(UUID.randomUUID().toString()));
+        try {
+            ImageIO.write(image, format, temp.toFile());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -3,8 +3,14 @@ package com.webflux.apirest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.webflux.apirest.models.documents.Category;
 import com.webflux.apirest.models.documents.Product;
+import com.webflux.apirest.models.dto.BulkResult;
+import com.webflux.apirest.models.dto.CategoryFacet;
+import com.webflux.apirest.models.dto.ProductPage;
+import com.webflux.apirest.models.dto.ProductSearchResult;
+import com.webflux.apirest.models.dto.QueryPlan;
 import com.webflux.apirest.models.services.ProductService;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,10 +18,21 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -23,7 +40,8 @@ import java.util.List;
 // @AutoConfigureWebTestClient is required for SpringBootTest.WebEnvironment.MOCK for simulated test
 // instead of SpringBootTest.WebEnvironment.RANDOM_PORT for real test
 @AutoConfigureWebTestClient
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {"config.seed.mode=reset",
+		"config.limits.client-header=X-Client-Id"})
 @Slf4j
 class ApirestApplicationTests {
 
@@ -31,8 +49,12 @@ class ApirestApplicationTests {
 	private WebTestClient webTestClient;
 	@Autowired
 	private ProductService productService;
+	@Autowired
+	private ReactiveMongoTemplate reactiveMongoTemplate;
 	@Value("${config.base.endpoint}")
 	private String endpoint;
+	@Value("${config.id-batch.max-size}")
+	private int batchMaxSize;
 
 	@Test
 	void listTest() {
@@ -51,6 +73,72 @@ class ApirestApplicationTests {
 				//.hasSize(9);
 	}
 
+	@Test
+	void listPageTest() {
+		String next = webTestClient.get()
+				.uri(uriBuilder -> uriBuilder.path(endpoint).queryParam("size", 2).build())
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().exists(ProductPage.NEXT_CURSOR_HEADER)
+				.expectBodyList(Product.class)
+				.hasSize(2)
+				.returnResult()
+				.getResponseHeaders()
+				.getFirst(ProductPage.NEXT_CURSOR_HEADER);
+
+		webTestClient.get()
+				.uri(uriBuilder -> uriBuilder.path(endpoint).queryParam("size", 2)
+						.queryParam("cursor", next).build())
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(Product.class)
+				.hasSize(2);
+
+		webTestClient.get()
+				.uri(uriBuilder -> uriBuilder.path(endpoint).queryParam("cursor", "not-a-cursor").build())
+				.exchange()
+				.expectStatus().isBadRequest();
+	}
+
+	@Test
+	void streamTest() {
+		webTestClient.get()
+				.uri(endpoint)
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.expectBodyList(Product.class)
+				.consumeWith(response -> Assertions.assertTrue(response.getResponseBody().size() > 0));
+	}
+
+	@Test
+	void replayTest() {
+		long catalog = productService.findAll().count().block();
+		webTestClient.get()
+				.uri(endpoint + "/replay?repeat=3")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.expectBodyList(Product.class)
+				.consumeWith(response -> {
+					Assertions.assertEquals(catalog * 3, response.getResponseBody().size());
+					response.getResponseBody().forEach(product ->
+							Assertions.assertEquals(product.getName().toUpperCase(), product.getName()));
+				});
+
+		webTestClient.get()
+				.uri(endpoint + "/replay?repeat=0")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isBadRequest()
+				.expectBody()
+				.jsonPath("$[0]").isEqualTo("repeat must be between 1 and 10000");
+	}
+
 	@Test
 	void viewTest() {
 		Product product = productService.findByName("TV").block();
@@ -73,6 +161,199 @@ class ApirestApplicationTests {
 //				.jsonPath("$.name").isEqualTo("TV");
 	}
 
+	@Test
+	void conditionalGetTest() {
+		Product product = productService.findByName("Laptop").block();
+		String eTag = webTestClient.get()
+				.uri(endpoint + "/{id}", Collections.singletonMap("id", product.getId()))
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().exists(HttpHeaders.ETAG)
+				.expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+				.returnResult(Product.class).getResponseHeaders().getETag();
+
+		webTestClient.get()
+				.uri(endpoint + "/{id}", Collections.singletonMap("id", product.getId()))
+				.header(HttpHeaders.IF_NONE_MATCH, eTag)
+				.exchange()
+				.expectStatus().isNotModified()
+				.expectBody().isEmpty();
+
+		String listETag = webTestClient.get()
+				.uri(endpoint)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.returnResult(Product.class).getResponseHeaders().getETag();
+
+		webTestClient.get()
+				.uri(endpoint)
+				.accept(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.IF_NONE_MATCH, listETag)
+				.exchange()
+				.expectStatus().isNotModified();
+	}
+
+	@Test
+	void batchedFindByIdTest() {
+		List<String> catalog = productService.findAll().take(batchMaxSize).map(Product::getId).collectList().block();
+		// Unknown ids always miss the cache, so every wave sends several full batches to the loader
+		Flux.range(0, 5)
+				.concatMap(wave -> Flux.range(0, batchMaxSize * 4)
+						.map(i -> i < catalog.size() ? catalog.get(i) : new ObjectId().toHexString())
+						.flatMap(productService::findById, batchMaxSize * 4)
+						.count()
+						.delayElement(Duration.ofMillis(10)))
+				.doOnNext(found -> Assertions.assertEquals(catalog.size(), found))
+				.then()
+				.block(Duration.ofSeconds(30));
+	}
+
+	@Test
+	void cacheStatsTest() {
+		Product product = productService.findByName("TV").block();
+		productService.findById(product.getId()).block();
+		productService.findById(product.getId()).block();
+
+		webTestClient.get()
+				.uri(endpoint.concat("/cache/stats"))
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$[?(@.name == 'products')].hitCount").isNotEmpty();
+	}
+
+	@Test
+	void searchTest() {
+		webTestClient.get()
+				.uri(endpoint.concat("/search?minPrice=300&maxPrice=500&fields=name,price&size=100"))
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(ProductSearchResult.class)
+				.consumeWith(response -> {
+					ProductSearchResult result = response.getResponseBody();
+					Assertions.assertFalse(result.getProducts().isEmpty());
+					result.getProducts().forEach(product -> {
+						Assertions.assertTrue(product.getPrice() >= 300 && product.getPrice() <= 500);
+						Assertions.assertNull(product.getCategory());
+					});
+					Assertions.assertEquals(result.getProducts().size(),
+							result.getCategories().stream().mapToLong(CategoryFacet::getCount).sum());
+				});
+
+		webTestClient.get()
+				.uri(endpoint.concat("/search?minPrice=500&maxPrice=300"))
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isBadRequest()
+				.expectBody()
+				.jsonPath("$[0]").isEqualTo("minPrice is greater than maxPrice");
+	}
+
+	@Test
+	void categoryProductsTest() {
+		Category category = productService.findByCategoryName("Video Games").block();
+
+		webTestClient.get()
+				.uri("/api/v2/categories/{id}/products?size=2", Collections.singletonMap("id", category.getId()))
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().exists(ProductPage.NEXT_CURSOR_HEADER)
+				.expectBodyList(Product.class)
+				.hasSize(2)
+				.consumeWith(response -> response.getResponseBody()
+						.forEach(product -> Assertions.assertEquals(category.getId(), product.getCategory().getId())));
+	}
+
+	@Test
+	void renameCategoryTest() {
+		Category category = productService.findByCategoryName("Phones").block();
+
+		webTestClient.put()
+				.uri("/api/v2/categories/{id}", Collections.singletonMap("id", category.getId()))
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(Mono.just(new Category("Smartphones")), Category.class)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.name").isEqualTo("Smartphones");
+
+		Assertions.assertEquals("Smartphones", productService.findByName("iPhone 11").block().getCategory().getName());
+		productService.updateCategory(category.getId(), new Category("Phones")).block();
+	}
+
+	@Test
+	void exportImportTest() {
+		byte[] archive = webTestClient.get()
+				.uri("/api/v2/catalog/export?collection=products&format=bson")
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentType("application/gzip")
+				.expectBody(byte[].class)
+				.returnResult()
+				.getResponseBody();
+
+		webTestClient.post()
+				.uri("/api/v2/catalog/import?collection=products&format=bson")
+				.contentType(MediaType.APPLICATION_OCTET_STREAM)
+				.bodyValue(archive)
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(BulkResult.class)
+				.consumeWith(response -> {
+					Assertions.assertFalse(response.getResponseBody().isEmpty());
+					response.getResponseBody().forEach(result ->
+							Assertions.assertEquals(BulkResult.Status.UPDATED, result.getStatus()));
+				});
+	}
+
+	@Test
+	void rateLimitTest() {
+		HttpStatus status = HttpStatus.OK;
+		HttpHeaders headers = HttpHeaders.EMPTY;
+		// The expensive class allows a burst of 5 per client. The other tests share the bucket of the local
+		// address, this one drains its own
+		for (int i = 0; i < 20 && status != HttpStatus.TOO_MANY_REQUESTS; i++) {
+			FluxExchangeResult<String> result = webTestClient.get()
+					.uri(endpoint.concat("/admin/query-plans"))
+					.header("X-Client-Id", "rateLimitTest")
+					.exchange()
+					.returnResult(String.class);
+			status = result.getStatus();
+			headers = result.getResponseHeaders();
+		}
+		Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, status);
+		Assertions.assertNotNull(headers.getFirst(HttpHeaders.RETRY_AFTER));
+	}
+
+	@Test
+	void queryPlansTest() {
+		webTestClient.get()
+				.uri(endpoint.concat("/admin/query-plans"))
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBodyList(QueryPlan.class)
+				.consumeWith(response -> response.getResponseBody()
+						.forEach(plan -> Assertions.assertFalse(plan.isCollectionScan(), plan.getFinder())));
+	}
+
+	@Test
+	void embeddedCategoryNotIndexedTest() {
+		List<String> indexes = reactiveMongoTemplate.indexOps(Product.class).getIndexInfo()
+				.map(IndexInfo::getName)
+				.collectList()
+				.block();
+		Assertions.assertFalse(indexes.contains("category.name"));
+		Assertions.assertTrue(reactiveMongoTemplate.indexOps(Category.class).getIndexInfo()
+				.any(index -> index.getName().equals("name"))
+				.block());
+	}
+
 	@Test
 	void createTest() {
 		Category category = productService.findByCategoryName("Electronic").block();
@@ -157,6 +438,45 @@ class ApirestApplicationTests {
 				});
 	}
 
+	@Test
+	void bulkSaveTest() {
+		Category category = productService.findByCategoryName("Electronic").block();
+		List<Product> products = Arrays.asList(new Product("Speaker", 120.0, category),
+				new Product("", 80.0, category),
+				new Product("Monitor", 300.0, category));
+
+		webTestClient.post()
+				.uri(endpoint.concat("/bulk"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.bodyValue(products)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(3)
+				.jsonPath("$[0].status").isEqualTo("CREATED")
+				.jsonPath("$[1].status").isEqualTo("INVALID")
+				.jsonPath("$[2].status").isEqualTo("CREATED")
+				.jsonPath("$[2].id").isNotEmpty();
+	}
+
+	@Test
+	void bulkDeleteTest() {
+		webTestClient.post()
+				.uri(endpoint.concat("/bulk/delete"))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.bodyValue(Arrays.asList(Collections.singletonMap("id", "000000000000000000000000"),
+						Collections.singletonMap("name", "No id")))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(2)
+				.jsonPath("$[0].status").isEqualTo("NOT_FOUND")
+				.jsonPath("$[1].status").isEqualTo("INVALID")
+				.jsonPath("$[1].errors[0]").isEqualTo("The field id must not be empty");
+	}
+
 	@Test
 	void editTest() {
 		Product product = productService.findByName("TV").block();
@@ -178,6 +498,87 @@ class ApirestApplicationTests {
 				.jsonPath("$.category.name").isEqualTo("Electronic");
 	}
 
+	@Test
+	void editPastStaleCacheTest() {
+		Product cached = productService.findById(productService.findByName("Switch").block().getId()).block();
+		Long version = cached.getVersion();
+		// A write the cache does not see, as one from another instance
+		reactiveMongoTemplate.updateFirst(Query.query(Criteria.where("id").is(cached.getId())),
+				new Update().inc("version", 1), Product.class).block();
+
+		webTestClient.put()
+				.uri(endpoint.concat("/{id}"), Collections.singletonMap("id", cached.getId()))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new Product("Switch OLED", 400.0, cached.getCategory()))
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody()
+				.jsonPath("$.name").isEqualTo("Switch OLED")
+				.jsonPath("$.version").isEqualTo(version + 2);
+
+		// The instance readers were handed is left as it was
+		Assertions.assertEquals("Switch", cached.getName());
+		Assertions.assertEquals(350.0, cached.getPrice());
+		Assertions.assertEquals(version, cached.getVersion());
+	}
+
+	@Test
+	void patchTest() {
+		Product product = productService.findByName("PS5").block();
+		Product changes = new Product();
+		changes.setPrice(450.0);
+		changes.setVersion(product.getVersion());
+
+		webTestClient.patch()
+				.uri(endpoint.concat("/{id}"), Collections.singletonMap("id", product.getId()))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.bodyValue(changes)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.name").isEqualTo("PS5")
+				.jsonPath("$.price").isEqualTo(450.0)
+				.jsonPath("$.version").isEqualTo(product.getVersion() + 1);
+
+		webTestClient.patch()
+				.uri(endpoint.concat("/{id}"), Collections.singletonMap("id", product.getId()))
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(changes)
+				.exchange()
+				.expectStatus().isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	@Test
+	void patchCategoryTest() {
+		Product product = productService.findByName("Xbox Series X").block();
+		Category category = productService.findByCategoryName("Computer").block();
+		Product changes = new Product();
+		changes.setCategory(new Category(category.getId(), "Not the name"));
+
+		webTestClient.patch()
+				.uri(endpoint.concat("/{id}"), Collections.singletonMap("id", product.getId()))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.bodyValue(changes)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.category.id").isEqualTo(category.getId())
+				.jsonPath("$.category.name").isEqualTo("Computer");
+
+		changes.setCategory(new Category(new ObjectId().toHexString(), "Computer"));
+		webTestClient.patch()
+				.uri(endpoint.concat("/{id}"), Collections.singletonMap("id", product.getId()))
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.bodyValue(changes)
+				.exchange()
+				.expectStatus().isBadRequest()
+				.expectBody()
+				.jsonPath("$[0]").isEqualTo("The field category.id does not name a category");
+	}
+
 	@Test
 	void deleteTest() {
 		Product product = productService.findByName("Mouse").block();